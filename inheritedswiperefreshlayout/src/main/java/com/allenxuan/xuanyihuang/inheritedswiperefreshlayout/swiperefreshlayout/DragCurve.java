@@ -0,0 +1,22 @@
+package com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout;
+
+/**
+ * Maps how far the user has pulled to how far the header moves, which defines the resistance
+ * of the pull. InheritedSwipeRefreshLayout samples the curve into a table whenever the curve or
+ * the distances change, so the curve is not evaluated on every move event. It is sampled for
+ * overscrolls up to twice the sum of the two distances and held at its last value beyond.
+ *
+ * @see DragCurves
+ */
+
+public interface DragCurve {
+    /**
+     * @param overscrollTop How far the content has been pulled, in pixels, after the drag rate
+     *                      is applied. Never negative.
+     * @param totalDragDistance The overscroll at which a release triggers a refresh.
+     * @param slingshotDistance The distance between the start and the refreshing positions of
+     *                          the header.
+     * @return How far the header moves from its start position, in pixels.
+     */
+    float getHeaderOffset(float overscrollTop, float totalDragDistance, float slingshotDistance);
+}
@@ -0,0 +1,38 @@
+package com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout;
+
+/**
+ * A {@link DragCurve} sampled at fixed steps, looked up with linear interpolation.
+ */
+
+final class DragCurveTable {
+    private static final int SAMPLE_COUNT = 129;
+
+    private final float[] mSamples = new float[SAMPLE_COUNT];
+    // Sample index per pixel of overscroll
+    private float mScale;
+
+    void build(DragCurve curve, float totalDragDistance, float slingshotDistance) {
+        final float range = 2 * (totalDragDistance + slingshotDistance);
+        if (totalDragDistance <= 0 || slingshotDistance <= 0) {
+            // Degenerate distances, keep the header at its start position
+            mScale = 0;
+            mSamples[SAMPLE_COUNT - 1] = 0;
+            return;
+        }
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            mSamples[i] = curve.getHeaderOffset(range * i / (SAMPLE_COUNT - 1),
+                    totalDragDistance, slingshotDistance);
+        }
+        mScale = (SAMPLE_COUNT - 1) / range;
+    }
+
+    float getHeaderOffset(float overscrollTop) {
+        final float position = Math.abs(overscrollTop) * mScale;
+        if (position >= SAMPLE_COUNT - 1 || mScale == 0) {
+            return mSamples[SAMPLE_COUNT - 1];
+        }
+        final int index = (int) position;
+        final float start = mSamples[index];
+        return start + (mSamples[index + 1] - start) * (position - index);
+    }
+}
@@ -0,0 +1,42 @@
+package com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout;
+
+/**
+ * Built-in {@link DragCurve}s.
+ */
+
+public final class DragCurves {
+    /**
+     * The curve of SwipeRefreshLayout: the header follows the pull up to the trigger distance,
+     * then moves on with increasing tension up to twice the slingshot distance.
+     */
+    public static final DragCurve SLINGSHOT = new DragCurve() {
+        @Override
+        public float getHeaderOffset(float overscrollTop, float totalDragDistance,
+                                     float slingshotDistance) {
+            float dragPercent = Math.min(1f, overscrollTop / totalDragDistance);
+            float extraOS = overscrollTop - totalDragDistance;
+            float tensionSlingshotPercent = Math.max(0, Math.min(extraOS, slingshotDistance * 2)
+                    / slingshotDistance);
+            float tensionPercent = (float) ((tensionSlingshotPercent / 4) - Math.pow(
+                    (tensionSlingshotPercent / 4), 2)) * 2f;
+            float extraMove = slingshotDistance * tensionPercent * 2;
+            return slingshotDistance * dragPercent + extraMove;
+        }
+    };
+
+    /**
+     * Constant resistance: the header reaches its refreshing position at the trigger distance
+     * and stops at twice the slingshot distance.
+     */
+    public static final DragCurve LINEAR = new DragCurve() {
+        @Override
+        public float getHeaderOffset(float overscrollTop, float totalDragDistance,
+                                     float slingshotDistance) {
+            return Math.min(overscrollTop * slingshotDistance / totalDragDistance,
+                    slingshotDistance * 2);
+        }
+    };
+
+    private DragCurves() {
+    }
+}
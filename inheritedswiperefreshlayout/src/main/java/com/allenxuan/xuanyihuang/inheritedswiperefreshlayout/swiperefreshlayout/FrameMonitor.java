@@ -0,0 +1,112 @@
+package com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.Build;
+import android.view.Choreographer;
+import android.view.WindowManager;
+
+/**
+ * Counts the frames of one gesture or animation phase of InheritedSwipeRefreshLayout and
+ * reports them when the phase ends. A frame is slow when the gap to the previous vsync
+ * exceeds one and a half refresh periods, i.e. at least one frame deadline was missed.
+ *
+ * <p>The monitor sees every vsync through its own frame callback, whether or not the layout
+ * drew anything. Only the vsyncs following a move of the header are counted, so that a finger
+ * resting on the screen or a phase left open does not inflate the count.</p>
+ */
+
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+final class FrameMonitor implements Choreographer.FrameCallback {
+    static final int PHASE_NONE = -1;
+
+    private static final float DEFAULT_REFRESH_RATE = 60f;
+    private static final float SLOW_FRAME_FACTOR = 1.5f;
+
+    private final InheritedSwipeRefreshLayout.OnFrameStatsListener mListener;
+    private final long mSlowFrameNanos;
+
+    private int mPhase = PHASE_NONE;
+    private boolean mCallbackPosted;
+    private long mLastFrameTimeNanos;
+    // Whether the header moved since the previous vsync
+    private boolean mHeaderMoved;
+    private int mFrameCount;
+    private int mSlowFrameCount;
+    private long mWorstFrameNanos;
+
+    FrameMonitor(Context context, InheritedSwipeRefreshLayout.OnFrameStatsListener listener) {
+        mListener = listener;
+        float refreshRate = ((WindowManager) context.getSystemService(Context.WINDOW_SERVICE))
+                .getDefaultDisplay().getRefreshRate();
+        if (refreshRate < 1f) {
+            refreshRate = DEFAULT_REFRESH_RATE;
+        }
+        mSlowFrameNanos = (long) (SLOW_FRAME_FACTOR * 1000000000L / refreshRate);
+    }
+
+    /**
+     * Start counting frames for the given phase, reporting the current one first if it differs.
+     */
+    void beginPhase(int phase) {
+        if (phase == mPhase) {
+            return;
+        }
+        endPhase();
+        mPhase = phase;
+        mLastFrameTimeNanos = 0;
+        mHeaderMoved = false;
+        mFrameCount = 0;
+        mSlowFrameCount = 0;
+        mWorstFrameNanos = 0;
+        if (!mCallbackPosted) {
+            Choreographer.getInstance().postFrameCallback(this);
+            mCallbackPosted = true;
+        }
+    }
+
+    /**
+     * Count the next frame of the current phase, the header moved in it.
+     */
+    void onHeaderMoved() {
+        mHeaderMoved = true;
+    }
+
+    /**
+     * Stop counting and report the current phase, if any.
+     */
+    void endPhase() {
+        if (mPhase == PHASE_NONE) {
+            return;
+        }
+        final int phase = mPhase;
+        mPhase = PHASE_NONE;
+        if (mCallbackPosted) {
+            Choreographer.getInstance().removeFrameCallback(this);
+            mCallbackPosted = false;
+        }
+        mListener.onFrameStats(phase, mFrameCount, mSlowFrameCount, mWorstFrameNanos);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        mCallbackPosted = false;
+        if (mPhase == PHASE_NONE) {
+            return;
+        }
+        if (mLastFrameTimeNanos != 0 && mHeaderMoved) {
+            final long frameNanos = frameTimeNanos - mLastFrameTimeNanos;
+            mFrameCount++;
+            if (frameNanos > mSlowFrameNanos) {
+                mSlowFrameCount++;
+            }
+            if (frameNanos > mWorstFrameNanos) {
+                mWorstFrameNanos = frameNanos;
+            }
+        }
+        mLastFrameTimeNanos = frameTimeNanos;
+        mHeaderMoved = false;
+        Choreographer.getInstance().postFrameCallback(this);
+        mCallbackPosted = true;
+    }
+}
@@ -0,0 +1,167 @@
+package com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout;
+
+import android.support.annotation.NonNull;
+import android.view.InputDevice;
+import android.view.MotionEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+
+/**
+ * Records the touch events dispatched to an InheritedSwipeRefreshLayout into a compact binary
+ * form, so that a pull performed on a device can be replayed identically by a local test. Attach
+ * it with {@link InheritedSwipeRefreshLayout#setGestureRecorder(GestureRecorder)}, perform the
+ * gesture, then save it with {@link #writeTo(OutputStream)}. Times are stored relative to the
+ * first recorded event; every batched historical sample is kept.
+ *
+ * <p>Format, big endian: the magic {@code "ISRG"} and a version short, then for each event a
+ * non-zero byte, the down and event times as int milliseconds, the action as an int, the pointer
+ * count as a byte, each pointer id as a byte, the historical sample count as a short and for
+ * each sample, historical ones first, its time as an int and the x and y floats of every
+ * pointer. A zero byte ends the stream.</p>
+ */
+
+public final class GestureRecorder {
+    private static final int MAGIC = 0x49535247;
+    private static final int VERSION = 1;
+    private static final int TAG_EVENT = 1;
+    private static final int TAG_END = 0;
+
+    private final ByteArrayOutputStream mBuffer = new ByteArrayOutputStream(4096);
+    private final DataOutputStream mOut = new DataOutputStream(mBuffer);
+    private long mStartTime = -1;
+    private int mEventCount;
+
+    /**
+     * Append an event to the recording.
+     */
+    public void record(@NonNull MotionEvent event) {
+        if (mStartTime < 0) {
+            mStartTime = event.getDownTime();
+        }
+        final int pointerCount = event.getPointerCount();
+        final int historySize = event.getHistorySize();
+        try {
+            mOut.writeByte(TAG_EVENT);
+            mOut.writeInt((int) (event.getDownTime() - mStartTime));
+            mOut.writeInt((int) (event.getEventTime() - mStartTime));
+            mOut.writeInt(event.getAction());
+            mOut.writeByte(pointerCount);
+            for (int p = 0; p < pointerCount; p++) {
+                mOut.writeByte(event.getPointerId(p));
+            }
+            mOut.writeShort(historySize);
+            for (int h = 0; h < historySize; h++) {
+                mOut.writeInt((int) (event.getHistoricalEventTime(h) - mStartTime));
+                for (int p = 0; p < pointerCount; p++) {
+                    mOut.writeFloat(event.getHistoricalX(p, h));
+                    mOut.writeFloat(event.getHistoricalY(p, h));
+                }
+            }
+            mOut.writeInt((int) (event.getEventTime() - mStartTime));
+            for (int p = 0; p < pointerCount; p++) {
+                mOut.writeFloat(event.getX(p));
+                mOut.writeFloat(event.getY(p));
+            }
+        } catch (IOException e) {
+            // Cannot happen when writing to memory
+            throw new IllegalStateException(e);
+        }
+        mEventCount++;
+    }
+
+    /**
+     * @return How many events were recorded since the recorder was created or cleared.
+     */
+    public int getEventCount() {
+        return mEventCount;
+    }
+
+    /**
+     * Drop the recorded events.
+     */
+    public void clear() {
+        mBuffer.reset();
+        mStartTime = -1;
+        mEventCount = 0;
+    }
+
+    /**
+     * Write the recorded events to the given stream, which is left open.
+     */
+    public void writeTo(@NonNull OutputStream out) throws IOException {
+        final DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(MAGIC);
+        header.writeShort(VERSION);
+        header.flush();
+        mBuffer.writeTo(out);
+        out.write(TAG_END);
+        out.flush();
+    }
+
+    /**
+     * Read a recording back as motion events shifted to start at the given time. The caller
+     * owns the events and should recycle them once done.
+     *
+     * @param in The stream to read the recording from, which is left open.
+     * @param startTime The time, in {@link android.os.SystemClock#uptimeMillis()} base, of the
+     *        first event.
+     */
+    @NonNull
+    public static MotionEvent[] readEvents(@NonNull InputStream in, long startTime)
+            throws IOException {
+        final DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a gesture recording");
+        }
+        final int version = data.readShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported gesture recording version " + version);
+        }
+        final ArrayList<MotionEvent> events = new ArrayList<>();
+        while (data.readByte() == TAG_EVENT) {
+            final long downTime = startTime + data.readInt();
+            final long eventTime = startTime + data.readInt();
+            final int action = data.readInt();
+            final int pointerCount = data.readByte();
+            final MotionEvent.PointerProperties[] properties =
+                    new MotionEvent.PointerProperties[pointerCount];
+            final MotionEvent.PointerCoords[] coords = new MotionEvent.PointerCoords[pointerCount];
+            for (int p = 0; p < pointerCount; p++) {
+                properties[p] = new MotionEvent.PointerProperties();
+                properties[p].id = data.readByte();
+                properties[p].toolType = MotionEvent.TOOL_TYPE_FINGER;
+                coords[p] = new MotionEvent.PointerCoords();
+            }
+            // The oldest sample creates the event, newer ones are added as batches
+            final int sampleCount = data.readShort() + 1;
+            MotionEvent event = null;
+            for (int s = 0; s < sampleCount; s++) {
+                final long sampleTime = startTime + data.readInt();
+                for (int p = 0; p < pointerCount; p++) {
+                    coords[p].x = data.readFloat();
+                    coords[p].y = data.readFloat();
+                    coords[p].pressure = 1f;
+                    coords[p].size = 1f;
+                }
+                if (event == null) {
+                    event = MotionEvent.obtain(downTime, sampleTime, action, pointerCount,
+                            properties, coords, 0, 0, 1f, 1f, 0, 0,
+                            InputDevice.SOURCE_TOUCHSCREEN, 0);
+                } else {
+                    event.addBatch(sampleTime, coords, 0);
+                }
+            }
+            if (event.getEventTime() != eventTime) {
+                throw new IOException("Corrupted gesture recording");
+            }
+            events.add(event);
+        }
+        return events.toArray(new MotionEvent[events.size()]);
+    }
+}
@@ -0,0 +1,112 @@
+package com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout;
+
+import android.content.Context;
+import android.os.Process;
+import android.util.Log;
+
+import com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout.header.HeaderViewBase;
+import com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout.header.HeaderViewFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Builds a header view on a shared background thread so that InheritedSwipeRefreshLayout can
+ * attach a ready-made header instead of inflating it on the UI thread. The header is created
+ * detached, so the factory must not touch any attached view hierarchy.
+ */
+
+final class HeaderPrewarmTask implements Runnable {
+    private static final String LOG_TAG = HeaderPrewarmTask.class.getSimpleName();
+
+    private static final int STATE_PENDING = 0;
+    private static final int STATE_RUNNING = 1;
+    private static final int STATE_DONE = 2;
+    private static final int STATE_TAKEN = 3;
+
+    private static ExecutorService sExecutor;
+
+    private final Context mContext;
+    private final HeaderViewFactory mFactory;
+    private int mState = STATE_PENDING;
+    private HeaderViewBase mHeaderView;
+
+    private HeaderPrewarmTask(Context context, HeaderViewFactory factory) {
+        mContext = context;
+        mFactory = factory;
+    }
+
+    static HeaderPrewarmTask start(Context context, HeaderViewFactory factory) {
+        final HeaderPrewarmTask task = new HeaderPrewarmTask(context, factory);
+        getExecutor().execute(task);
+        return task;
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    final Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            r.run();
+                        }
+                    }, "HeaderPrewarm");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sExecutor;
+    }
+
+    @Override
+    public void run() {
+        synchronized (this) {
+            if (mState != STATE_PENDING) {
+                // Already claimed by the UI thread
+                return;
+            }
+            mState = STATE_RUNNING;
+        }
+        HeaderViewBase headerView = null;
+        try {
+            headerView = mFactory.createHeaderView(mContext);
+        } catch (RuntimeException e) {
+            Log.w(LOG_TAG, "Failed to prewarm header view, it will be created on the UI thread", e);
+        }
+        synchronized (this) {
+            if (mState == STATE_TAKEN) {
+                // Dropped while inflating, the UI thread created its own header
+                return;
+            }
+            mHeaderView = headerView;
+            mState = STATE_DONE;
+        }
+    }
+
+    /**
+     * Hand the prewarmed header over to the UI thread. Never waits: the background thread runs
+     * at a low priority, so the UI thread must not block on it. If the header is not ready yet
+     * the task is dropped, a header still being inflated is then discarded once it is done.
+     *
+     * @return The prewarmed header, or null if the caller has to create one itself.
+     */
+    synchronized HeaderViewBase take() {
+        final HeaderViewBase headerView = mState == STATE_DONE ? mHeaderView : null;
+        mHeaderView = null;
+        mState = STATE_TAKEN;
+        return headerView;
+    }
+
+    /**
+     * Drop the task. A header that is being inflated right now is discarded once it is done.
+     */
+    synchronized void cancel() {
+        mHeaderView = null;
+        mState = STATE_TAKEN;
+    }
+}
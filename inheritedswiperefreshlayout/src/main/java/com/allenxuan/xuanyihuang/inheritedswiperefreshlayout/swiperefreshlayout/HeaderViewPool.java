@@ -0,0 +1,97 @@
+package com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.view.View;
+
+import com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout.header.HeaderViewBase;
+import com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout.header.HeaderViewFactory;
+
+import java.util.ArrayList;
+
+/**
+ * Lends header views to the InheritedSwipeRefreshLayouts of one window. A layout borrows a
+ * header when it is pulled or starts refreshing and gives it back once it has stayed at rest,
+ * so screens with many layouts, e.g. the tabs of a ViewPager, inflate about as many headers as
+ * can be visible at the same time rather than one per layout.
+ *
+ * <p>Headers keep a reference to the context they were created with: scope a pool to a single
+ * Activity and drop it along with it. The pool must only be used from the UI thread.</p>
+ */
+
+public final class HeaderViewPool {
+    private final HeaderViewFactory mFactory;
+    private final int mMaxIdleCount;
+    private final ArrayList<HeaderViewBase> mIdleHeaders = new ArrayList<>();
+    private int mCreatedCount;
+
+    /**
+     * Create a pool that keeps at most one idle header.
+     *
+     * @param factory The factory used when no idle header is available.
+     */
+    public HeaderViewPool(@NonNull HeaderViewFactory factory) {
+        this(factory, 1);
+    }
+
+    /**
+     * @param factory The factory used when no idle header is available.
+     * @param maxIdleCount How many returned headers are kept for reuse.
+     */
+    public HeaderViewPool(@NonNull HeaderViewFactory factory, int maxIdleCount) {
+        if (maxIdleCount < 1) {
+            throw new IllegalArgumentException("maxIdleCount must be at least 1, was "
+                    + maxIdleCount);
+        }
+        mFactory = factory;
+        mMaxIdleCount = maxIdleCount;
+    }
+
+    /**
+     * @return A detached header, either a returned one or a new one.
+     */
+    @NonNull
+    HeaderViewBase acquire(@NonNull Context context) {
+        final int size = mIdleHeaders.size();
+        if (size > 0) {
+            return mIdleHeaders.remove(size - 1);
+        }
+        mCreatedCount++;
+        return mFactory.createHeaderView(context);
+    }
+
+    /**
+     * Take back a header the caller already removed from its parent, with the state left by
+     * the previous layout cleared.
+     */
+    void release(@NonNull HeaderViewBase headerView) {
+        if (headerView.getParent() != null) {
+            throw new IllegalStateException("The header must be detached before it is released");
+        }
+        if (mIdleHeaders.size() >= mMaxIdleCount || mIdleHeaders.contains(headerView)) {
+            return;
+        }
+        headerView.clearAnimation();
+        headerView.setAnimationListener(null);
+        headerView.setTranslationY(0);
+        headerView.setScaleX(1f);
+        headerView.setScaleY(1f);
+        headerView.setAlpha(1f);
+        headerView.setVisibility(View.GONE);
+        mIdleHeaders.add(headerView);
+    }
+
+    /**
+     * @return How many headers the pool had to create so far.
+     */
+    public int getCreatedCount() {
+        return mCreatedCount;
+    }
+
+    /**
+     * Drop the idle headers, e.g. when the system is low on memory.
+     */
+    public void clear() {
+        mIdleHeaders.clear();
+    }
+}
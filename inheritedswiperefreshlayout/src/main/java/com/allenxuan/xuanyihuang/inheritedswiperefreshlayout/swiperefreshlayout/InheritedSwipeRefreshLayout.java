@@ -18,12 +18,18 @@
 package com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout;
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
 import android.support.v4.view.NestedScrollingChild;
+import android.support.v4.view.NestedScrollingChild2;
 import android.support.v4.view.NestedScrollingChildHelper;
 import android.support.v4.view.NestedScrollingParent;
+import android.support.v4.view.NestedScrollingParent2;
 import android.support.v4.view.NestedScrollingParentHelper;
+import android.support.v4.view.ScrollingView;
 import android.support.v4.view.ViewCompat;
 import android.support.v4.widget.CircularProgressDrawable;
 import android.support.v4.widget.ListViewCompat;
@@ -34,14 +40,25 @@ import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewConfiguration;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+import android.view.VelocityTracker;
+import android.view.animation.AccelerateDecelerateInterpolator;
 import android.view.animation.Animation;
 import android.view.animation.DecelerateInterpolator;
+import android.view.animation.Interpolator;
 import android.view.animation.Transformation;
 import android.widget.AbsListView;
 import android.widget.ListView;
 
+import com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.R;
 import com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout.header.HeaderViewBase;
+import com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout.header.HeaderViewFactory;
+import com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout.header.IHeaderView;
+import com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout.header.SimpleFooterViewImpl;
 import com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout.header.SimpleHeaderViewImpl;
+
+import java.io.PrintWriter;
+
 /**
  * Created by allenxuan on 26/12/2017.
  */
@@ -69,12 +86,26 @@ import com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout.
  */
 
 public class InheritedSwipeRefreshLayout extends ViewGroup implements NestedScrollingParent,
-        NestedScrollingChild {
+        NestedScrollingParent2, NestedScrollingChild, NestedScrollingChild2 {
     // Maps to ProgressBar.Large style
     public static final int LARGE = CircularProgressDrawable.LARGE;
     // Maps to ProgressBar default style
     public static final int DEFAULT = CircularProgressDrawable.DEFAULT;
 
+    // No hardware layer promotion
+    public static final int LAYER_PROMOTION_NONE = 0;
+    // Promote the header to a hardware layer while it moves
+    public static final int LAYER_PROMOTION_HEADER = 1;
+    // Promote both the header and the target to hardware layers while they move
+    public static final int LAYER_PROMOTION_HEADER_AND_TARGET = 2;
+
+    // Frame phase of a drag, by touch or nested scrolling
+    public static final int FRAME_PHASE_DRAG = 0;
+    // Frame phase of the animation to the refreshing position
+    public static final int FRAME_PHASE_ANIMATE_TO_TRIGGER = 1;
+    // Frame phase of the animation back to the start position
+    public static final int FRAME_PHASE_RETURN_TO_START = 2;
+
     @VisibleForTesting
     static final int HEADER_HEIGHT = 80;
     @VisibleForTesting
@@ -89,6 +120,9 @@ public class InheritedSwipeRefreshLayout extends ViewGroup implements NestedScro
     private static final int INVALID_POINTER = -1;
     private static final float DRAG_RATE = .5f;
 
+    // A fling only triggers a refresh once the pull went at least this far
+    private static final float MIN_FLING_DRAG_FRACTION = .5f;
+
     // Max amount of circle that can be filled by progress during swipe gesture,
     // where 1.0 is a full circle
     private static final float MAX_PROGRESS_ANGLE = .8f;
@@ -101,6 +135,12 @@ public class InheritedSwipeRefreshLayout extends ViewGroup implements NestedScro
 
     private static final int ANIMATE_TO_START_DURATION = 200;
 
+    // How long the header shows its up to date state when a refresh is skipped
+    private static final int UP_TO_DATE_DURATION = 600;
+
+    // How long a pooled header stays with an idle layout, so that a run of pulls keeps it
+    private static final int HEADER_RELEASE_DELAY = 3000;
+
     // Default background for the progress spinner
     private static final int CIRCLE_BG_LIGHT = 0xFFFAFAFA;
     // Default offset in dips from the top of the view to where the header view should stop
@@ -108,10 +148,45 @@ public class InheritedSwipeRefreshLayout extends ViewGroup implements NestedScro
 
     private View mTarget; // the target of the gesture
     OnRefreshListener mListener;
-    boolean mRefreshing = false;
+    private OnAsyncRefreshListener mAsyncListener;
+    // The refresh the listeners were notified of and that has not completed yet
+    private RefreshRequest mRefreshRequest;
+    private long mRefreshTimeout;
+
+    private long mFreshnessTtl;
+    // SystemClock.elapsedRealtime() of the last successful refresh, or -1
+    private long mLastRefreshCompletedTime = -1;
+    private int mExecutedRefreshCount;
+    private int mSkippedRefreshCount;
+    private boolean mHeaderUpToDate;
+    // One of the IHeaderView states, and what the header was last told, to only call it on change
+    private int mHeaderState = IHeaderView.STATE_IDLE;
+    private int mDispatchedHeaderState = -1;
+    private float mDispatchedPullFraction;
+
+    private OnSpeculativeRefreshListener mSpeculativeListener;
+    // Fraction of mTotalDragDistance at which the refresh is prepared, 0 when disabled
+    private float mSpeculativeThreshold;
+    // Whether the listener prepared a refresh that has been neither started nor aborted yet
+    private boolean mSpeculativeRefreshPrepared;
+    // Whether the layout is dragged, scrolled, refreshing or settling, with a history of changes
+    final RefreshStateMachine mStateMachine = new RefreshStateMachine();
     private int mTouchSlop;
     private float mTotalDragDistance = -1;
 
+    // Obtained on the first touch and reused for every gesture until detached
+    private VelocityTracker mVelocityTracker;
+    private final int mMaximumFlingVelocity;
+    // Downward velocity in pixels per second that triggers a refresh, 0 when disabled
+    private float mFlingToRefreshVelocity;
+    // Downward velocity of the nested fling that ends the current nested scroll
+    private float mNestedFlingVelocityY;
+
+    private DragCurve mDragCurve = DragCurves.SLINGSHOT;
+    private final DragCurveTable mDragCurveTable = new DragCurveTable();
+    // Whether mDragCurveTable has to be rebuilt before the next move
+    private boolean mDragCurveDirty = true;
+
     // If nested scrolling is enabled, the total amount that needed to be
     // consumed by this as the nested scrolling parent is used in place of the
     // overscroll determined by MOVE events in the onTouch handler
@@ -120,28 +195,79 @@ public class InheritedSwipeRefreshLayout extends ViewGroup implements NestedScro
     private final NestedScrollingChildHelper mNestedScrollingChildHelper;
     private final int[] mParentScrollConsumed = new int[2];
     private final int[] mParentOffsetInWindow = new int[2];
-    private boolean mNestedScrollInProgress;
 
     private int mMediumAnimationDuration;
     int mCurrentTargetOffsetTop;
+    // The part of mCurrentTargetOffsetTop already applied to the layout bounds of the header and
+    // the target. Only differs from mCurrentTargetOffsetTop in translation offset mode.
+    private int mCommittedOffsetTop;
+    private boolean mTranslationOffsetEnabled;
+
+    private int mLayerPromotion = LAYER_PROMOTION_NONE;
+    private boolean mLayersPromoted;
+    // Layer types to restore when the promoted views are demoted
+    private int mHeaderSavedLayerType;
+    private int mTargetSavedLayerType;
+    private View mPromotedTarget;
+
+    private FrameMonitor mFrameMonitor;
+    private GestureRecorder mGestureRecorder;
+
+    private RefreshScheduler mRefreshScheduler;
+    // Whether the triggered refresh waits in mRefreshScheduler for a slot
+    private boolean mRefreshQueued;
 
     private float mInitialMotionY;
     private float mInitialDownY;
-    private boolean mIsBeingDragged;
     private int mActivePointerId = INVALID_POINTER;
     // Whether this item is scaled up rather than clipped
     boolean mScale;
 
-    // Target is returning to its start offset because it was cancelled or a
-    // refresh was triggered.
-    private boolean mReturningToStart;
     private final DecelerateInterpolator mDecelerateInterpolator;
     private static final int[] LAYOUT_ATTRS = new int[] {
             android.R.attr.enabled
     };
 
+    private static final HeaderViewFactory DEFAULT_HEADER_VIEW_FACTORY = new HeaderViewFactory() {
+        @Override
+        public HeaderViewBase createHeaderView(Context context) {
+            return new SimpleHeaderViewImpl(context);
+        }
+    };
+
+    private static final HeaderViewFactory DEFAULT_FOOTER_VIEW_FACTORY = new HeaderViewFactory() {
+        @Override
+        public HeaderViewBase createHeaderView(Context context) {
+            return new SimpleFooterViewImpl(context);
+        }
+    };
+
+    // Created lazily by ensureHeaderView(), null until the header has to be shown
     HeaderViewBase mHeaderView;
     private int mHeaderViewIndex = -1;
+    // Set when children are added or removed, mHeaderViewIndex is then resolved again
+    private boolean mHeaderViewIndexDirty;
+    private OnHierarchyChangeListener mOnHierarchyChangeListener;
+
+    // Measure specs the target and the header were last measured with
+    private int mTargetWidthMeasureSpec;
+    private int mTargetHeightMeasureSpec;
+    private int mHeaderWidthMeasureSpec;
+
+    // Created lazily the first time more content is loaded
+    private HeaderViewBase mFooterView;
+    private HeaderViewFactory mFooterViewFactory = DEFAULT_FOOTER_VIEW_FACTORY;
+    private OnLoadMoreListener mLoadMoreListener;
+    private boolean mLoadingMore;
+    private int mLoadMorePrefetchDistance;
+    private int mLoadMorePrefetchItemCount;
+    // Scroll position of the target when load more was last checked, window scrolls that did not
+    // move the target are ignored
+    private long mLoadMoreScrollPosition;
+    private HeaderViewFactory mHeaderViewFactory = DEFAULT_HEADER_VIEW_FACTORY;
+    private HeaderPrewarmTask mHeaderPrewarmTask;
+    // When set, the header is borrowed from the pool and given back once it has stayed at rest
+    private HeaderViewPool mHeaderViewPool;
 
     protected int mFrom;
 
@@ -151,17 +277,23 @@ public class InheritedSwipeRefreshLayout extends ViewGroup implements NestedScro
 
     int mHeadViewOffsetEnd;
 
-    private Animation mScaleAnimation;
+    // Kinds of transition run by mHeaderAnimation
+    private static final int ANIMATION_SCALE_UP = 0;
+    private static final int ANIMATION_SCALE_DOWN = 1;
+    private static final int ANIMATION_ALPHA = 2;
+    private static final int ANIMATION_TO_CORRECT_POSITION = 3;
+    private static final int ANIMATION_TO_START_POSITION = 4;
+    private static final int ANIMATION_SCALE_DOWN_TO_START = 5;
 
-    private Animation mScaleDownAnimation;
+    // A single animation instance drives every header transition so that a refresh cycle
+    // does not allocate
+    private final HeaderAnimation mHeaderAnimation = new HeaderAnimation();
 
-    private Animation mAlphaStartAnimation;
+    private final Interpolator mAccelerateDecelerateInterpolator = new AccelerateDecelerateInterpolator();
 
-    private Animation mAlphaMaxAnimation;
+    private int mStartingAlpha;
 
-    private Animation mScaleDownToStartAnimation;
-
-    boolean mNotify;
+    private int mEndingAlpha;
 
     private int mHeaderHeight;
 
@@ -170,6 +302,21 @@ public class InheritedSwipeRefreshLayout extends ViewGroup implements NestedScro
 
     private OnChildScrollUpCallback mChildScrollUpCallback;
 
+    private boolean mChildScrollUpCacheEnabled;
+    // Whether the target may have scrolled or changed since mCachedChildScrollUp was computed
+    private boolean mChildScrollUpDirty = true;
+    private boolean mCachedChildScrollUp;
+    // Reports the scrolls of the target while the cache is in use, null when it cannot
+    private TargetScrollWatcher mTargetScrollWatcher;
+
+    private final TargetScrollWatcher.OnTargetScrollListener mTargetScrollListener =
+            new TargetScrollWatcher.OnTargetScrollListener() {
+        @Override
+        public void onTargetScrolled() {
+            mChildScrollUpDirty = true;
+        }
+    };
+
     private Animation.AnimationListener mRefreshListener = new Animation.AnimationListener() {
         @Override
         public void onAnimationStart(Animation animation) {
@@ -181,15 +328,17 @@ public class InheritedSwipeRefreshLayout extends ViewGroup implements NestedScro
 
         @Override
         public void onAnimationEnd(Animation animation) {
-            if (mRefreshing) {
+            if (mStateMachine.isRefreshing()) {
                 // Make sure the header view is fully visible
                 mHeaderView.setAlpha(1);
-                if (mNotify) {
-                    if (mListener != null) {
-                        mListener.onRefresh();
+                if (mStateMachine.getState() == RefreshStateMachine.STATE_TRIGGERED) {
+                    mStateMachine.moveTo(RefreshStateMachine.STATE_REFRESHING);
+                    if (isContentFresh()) {
+                        skipRefresh();
+                    } else {
+                        scheduleRefresh();
                     }
                 }
-                mCurrentTargetOffsetTop = mHeaderView.getTop();
             } else {
                 reset();
             }
@@ -197,32 +346,298 @@ public class InheritedSwipeRefreshLayout extends ViewGroup implements NestedScro
     };
 
     void reset() {
-        mHeaderView.clearAnimation();
-        mHeaderView.setVisibility(View.GONE);
+        if (mHeaderView != null) {
+            mHeaderView.clearAnimation();
+            mHeaderView.setVisibility(View.GONE);
+        }
+        setHeaderUpToDate(false);
+        abortSpeculativeRefresh();
 //        setColorViewAlpha(MAX_ALPHA);
         // Return the circle to its start position
         if (mScale) {
             setAnimationProgress(0 /* animation complete and view is hidden */);
-        } else {
-            setTargetOffsetTopAndBottom(mOriginalOffsetTop - mCurrentTargetOffsetTop);
         }
-        mCurrentTargetOffsetTop = mHeaderView.getTop();
+        // The target follows the header in both modes, so both go back to the start
+        setTargetOffsetTopAndBottom(mOriginalOffsetTop - mCurrentTargetOffsetTop);
+        setHeaderState(IHeaderView.STATE_IDLE);
+        onHeaderSettled();
+        scheduleHeaderRelease();
     }
 
+    private void scheduleHeaderRelease() {
+        if (mHeaderViewPool != null && mHeaderView != null) {
+            // Giving the header back costs both layouts a layout pass, wait for the layout to
+            // stay idle before doing so
+            removeCallbacks(mReleaseHeaderRunnable);
+            postDelayed(mReleaseHeaderRunnable, HEADER_RELEASE_DELAY);
+        }
+    }
+
+    private final Runnable mReleaseHeaderRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!mStateMachine.isRefreshing() && mHeaderView != null
+                    && mHeaderView.getVisibility() != View.VISIBLE) {
+                dropHeaderView();
+            }
+        }
+    };
+
+    /**
+     * Called whenever the header comes to rest: a transition finished or the layout was reset.
+     */
+    private void onHeaderSettled() {
+        mStateMachine.moveFrom(RefreshStateMachine.STATE_RETURNING_TO_START,
+                RefreshStateMachine.STATE_IDLE);
+        if (mStateMachine.isBeingDragged() || mStateMachine.isNestedScrollInProgress()) {
+            // Grabbed again on its way back, the new pull keeps its layers and frame phase
+            return;
+        }
+        commitOffsetTranslation();
+        demoteLayers();
+        if (mFrameMonitor != null) {
+            mFrameMonitor.endPhase();
+        }
+        if (mStateMachine.getState() == RefreshStateMachine.STATE_IDLE) {
+            // Whichever way the pull ended, it did not trigger the refresh it prepared
+            abortSpeculativeRefresh();
+        }
+        if (mStateMachine.getState() == RefreshStateMachine.STATE_IDLE && mHeaderView != null) {
+            // Back at its start with nothing to show, a pooled header can go to another layout
+            // once this one stays idle
+            setHeaderState(IHeaderView.STATE_IDLE);
+            mHeaderView.setVisibility(View.GONE);
+            setHeaderUpToDate(false);
+            scheduleHeaderRelease();
+        }
+    }
+
+    private final Animation.AnimationListener mSettleListener = new Animation.AnimationListener() {
+        @Override
+        public void onAnimationStart(Animation animation) {
+        }
+
+        @Override
+        public void onAnimationEnd(Animation animation) {
+            if (isHeaderAnimating()) {
+                // The end of a previous leg was delivered after the next leg started
+                return;
+            }
+            onHeaderSettled();
+        }
+
+        @Override
+        public void onAnimationRepeat(Animation animation) {
+        }
+    };
+
     @Override
     public void setEnabled(boolean enabled) {
         super.setEnabled(enabled);
         if (!enabled) {
-            reset();
+            cancelAndReset();
         }
     }
 
+    /**
+     * Drop the refresh or gesture in progress and bring the header back to rest at once.
+     */
+    private void cancelAndReset() {
+        cancelRefreshRequest();
+        // The cancelled request can no longer be finished, nothing else would end the refresh
+        mStateMachine.moveTo(RefreshStateMachine.STATE_IDLE);
+        reset();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        getViewTreeObserver().addOnScrollChangedListener(mScrollChangedListener);
+        getViewTreeObserver().addOnGlobalLayoutListener(mGlobalLayoutListener);
+        // The target was not watched while detached
+        mChildScrollUpDirty = true;
+        mLoadMoreScrollPosition = getTargetScrollPosition();
+    }
+
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
-        reset();
+        getViewTreeObserver().removeOnScrollChangedListener(mScrollChangedListener);
+        getViewTreeObserver().removeGlobalOnLayoutListener(mGlobalLayoutListener);
+        updateTargetScrollWatcher();
+        cancelAndReset();
+        if (mHeaderViewPool != null) {
+            removeCallbacks(mReleaseHeaderRunnable);
+            dropHeaderView();
+        }
+        if (mVelocityTracker != null) {
+            mVelocityTracker.recycle();
+            mVelocityTracker = null;
+        }
+    }
+
+    private final ViewTreeObserver.OnScrollChangedListener mScrollChangedListener =
+            new ViewTreeObserver.OnScrollChangedListener() {
+        @Override
+        public void onScrollChanged() {
+            mChildScrollUpDirty = true;
+            onWindowScrollChanged();
+        }
+    };
+
+    private final ViewTreeObserver.OnGlobalLayoutListener mGlobalLayoutListener =
+            new ViewTreeObserver.OnGlobalLayoutListener() {
+        @Override
+        public void onGlobalLayout() {
+            // Content added or removed above the first visible item changes the answer too
+            mChildScrollUpDirty = true;
+        }
+    };
+
+    private void notifyRefresh() {
+        if (mRefreshRequest != null) {
+            // Single flight, the pending request covers this trigger
+            return;
+        }
+        final RefreshRequest request = new RefreshRequest(this);
+        mRefreshRequest = request;
+        // A refresh skipped earlier may have left the header saying it is up to date
+        setHeaderUpToDate(false);
+        // The refresh takes over whatever the listener prepared
+        mSpeculativeRefreshPrepared = false;
+        mExecutedRefreshCount++;
+        if (mRefreshTimeout > 0) {
+            postDelayed(mRefreshTimeoutRunnable, mRefreshTimeout);
+        }
+        if (mAsyncListener != null) {
+            mAsyncListener.onRefresh(request);
+        }
+        if (mListener != null) {
+            mListener.onRefresh();
+        }
+    }
+
+    private void scheduleRefresh() {
+        if (mRefreshScheduler == null || mRefreshRequest != null) {
+            notifyRefresh();
+            return;
+        }
+        if (mRefreshQueued) {
+            return;
+        }
+        mRefreshQueued = true;
+        mRefreshScheduler.enqueue(this);
+        if (mRefreshQueued) {
+            setHeaderState(IHeaderView.STATE_PENDING);
+        }
+    }
+
+    /**
+     * Called by the scheduler when the queued refresh of this layout gets a slot.
+     */
+    void startScheduledRefresh() {
+        mRefreshQueued = false;
+        setHeaderState(IHeaderView.STATE_REFRESHING);
+        notifyRefresh();
+    }
+
+    /**
+     * Give back the slot of the current refresh, or leave the queue if it has not started.
+     */
+    private void leaveRefreshScheduler() {
+        mRefreshQueued = false;
+        if (mRefreshScheduler != null) {
+            mRefreshScheduler.remove(this);
+        }
+    }
+
+    void onRefreshRequestFinished(RefreshRequest request) {
+        if (request != mRefreshRequest) {
+            return;
+        }
+        // Only a refresh reported done makes the content fresh, not one that failed or timed out
+        mLastRefreshCompletedTime = SystemClock.elapsedRealtime();
+        setRefreshing(false);
+    }
+
+    private boolean isContentFresh() {
+        return mFreshnessTtl > 0 && mLastRefreshCompletedTime >= 0
+                && SystemClock.elapsedRealtime() - mLastRefreshCompletedTime < mFreshnessTtl;
+    }
+
+    private void maybePrepareSpeculativeRefresh(float overscrollTop) {
+        if (mSpeculativeListener == null || mSpeculativeThreshold <= 0
+                || mSpeculativeRefreshPrepared || mRefreshRequest != null
+                || overscrollTop < mSpeculativeThreshold * mTotalDragDistance
+                || isContentFresh()) {
+            return;
+        }
+        mSpeculativeRefreshPrepared = true;
+        mSpeculativeListener.onPrepareRefresh();
+    }
+
+    private void abortSpeculativeRefresh() {
+        if (mSpeculativeRefreshPrepared) {
+            mSpeculativeRefreshPrepared = false;
+            if (mSpeculativeListener != null) {
+                mSpeculativeListener.onAbortRefresh();
+            }
+        }
+    }
+
+    private void skipRefresh() {
+        mSkippedRefreshCount++;
+        setHeaderUpToDate(true);
+        postDelayed(mFinishSkippedRefreshRunnable, UP_TO_DATE_DURATION);
+    }
+
+    private final Runnable mFinishSkippedRefreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            setRefreshing(false);
+        }
+    };
+
+    private void setHeaderUpToDate(boolean upToDate) {
+        if (mHeaderUpToDate != upToDate && mHeaderView != null) {
+            mHeaderUpToDate = upToDate;
+            mHeaderView.onUpToDateChanged(upToDate);
+        }
+    }
+
+    /**
+     * Mark the pending refresh as done, without cancelling it.
+     */
+    private void completeRefreshRequest() {
+        removeCallbacks(mFinishSkippedRefreshRunnable);
+        if (mRefreshRequest != null) {
+            removeCallbacks(mRefreshTimeoutRunnable);
+            mRefreshRequest.markFinished();
+            mRefreshRequest = null;
+        }
+        leaveRefreshScheduler();
+    }
+
+    private void cancelRefreshRequest() {
+        // A skipped refresh must not end a later one
+        removeCallbacks(mFinishSkippedRefreshRunnable);
+        if (mRefreshRequest != null) {
+            removeCallbacks(mRefreshTimeoutRunnable);
+            final RefreshRequest request = mRefreshRequest;
+            mRefreshRequest = null;
+            request.cancel();
+        }
+        leaveRefreshScheduler();
     }
 
+    private final Runnable mRefreshTimeoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            cancelRefreshRequest();
+            setRefreshing(false);
+        }
+    };
+
     private void setColorViewAlpha(int targetAlpha) {
 //        mHeaderView.getBackground().setAlpha(targetAlpha);
 //        mHeaderView.setAlpha((float)(targetAlpha / 255.0));
@@ -252,8 +667,11 @@ public class InheritedSwipeRefreshLayout extends ViewGroup implements NestedScro
         mOriginalOffsetTop = start;
         mHeadViewOffsetEnd = end;
         mUsingCustomStart = true;
+        mDragCurveDirty = true;
         reset();
-        mRefreshing = false;
+        if (mStateMachine.isRefreshing()) {
+            mStateMachine.moveTo(RefreshStateMachine.STATE_IDLE);
+        }
     }
 
     /**
@@ -288,7 +706,10 @@ public class InheritedSwipeRefreshLayout extends ViewGroup implements NestedScro
     public void setProgressViewEndTarget(boolean scale, int end) {
         mHeadViewOffsetEnd = end;
         mScale = scale;
-        mHeaderView.invalidate();
+        mDragCurveDirty = true;
+        if (mHeaderView != null) {
+            mHeaderView.invalidate();
+        }
     }
 
 //    /**
@@ -331,6 +752,7 @@ public class InheritedSwipeRefreshLayout extends ViewGroup implements NestedScro
         super(context, attrs);
 
         mTouchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
+        mMaximumFlingVelocity = ViewConfiguration.get(context).getScaledMaximumFlingVelocity();
 
         mMediumAnimationDuration = getResources().getInteger(
                 android.R.integer.config_mediumAnimTime);
@@ -341,8 +763,7 @@ public class InheritedSwipeRefreshLayout extends ViewGroup implements NestedScro
         final DisplayMetrics metrics = getResources().getDisplayMetrics();
         mHeaderHeight = (int) (HEADER_HEIGHT * metrics.density);
 
-        createHeaderView();
-        ViewCompat.setChildrenDrawingOrderEnabled(this, true);
+        super.setOnHierarchyChangeListener(mHierarchyChangeListener);
         // the absolute offset has to take into account that the header view starts at an offset
         mHeadViewOffsetEnd = (int) (DEFAULT_HEADER_TARGET * metrics.density);
         mTotalDragDistance = mHeadViewOffsetEnd;
@@ -351,12 +772,80 @@ public class InheritedSwipeRefreshLayout extends ViewGroup implements NestedScro
         mNestedScrollingChildHelper = new NestedScrollingChildHelper(this);
         setNestedScrollingEnabled(true);
 
-        mOriginalOffsetTop = mCurrentTargetOffsetTop = -mHeaderHeight;
+        mOriginalOffsetTop = mCurrentTargetOffsetTop = mCommittedOffsetTop = -mHeaderHeight;
         moveToStart(1.0f);
+        mHeaderAnimation.setAnimationListener(mSettleListener);
 
         final TypedArray a = context.obtainStyledAttributes(attrs, LAYOUT_ATTRS);
         setEnabled(a.getBoolean(0, true));
         a.recycle();
+
+        final TypedArray b = context.obtainStyledAttributes(attrs, R.styleable.InheritedSwipeRefreshLayout);
+        final String headerViewClass = b.getString(R.styleable.InheritedSwipeRefreshLayout_isrl_headerView);
+        if (headerViewClass != null) {
+            mHeaderViewFactory = new ClassNameHeaderViewFactory(context, headerViewClass);
+        }
+        final boolean prewarmHeaderView = b.getBoolean(
+                R.styleable.InheritedSwipeRefreshLayout_isrl_prewarmHeaderView, false);
+        mTranslationOffsetEnabled = b.getBoolean(
+                R.styleable.InheritedSwipeRefreshLayout_isrl_translationOffset, false);
+        mLayerPromotion = b.getInt(
+                R.styleable.InheritedSwipeRefreshLayout_isrl_layerPromotion, LAYER_PROMOTION_NONE);
+        b.recycle();
+        if (prewarmHeaderView) {
+            prewarmHeaderView();
+        }
+    }
+
+    private final OnHierarchyChangeListener mHierarchyChangeListener = new OnHierarchyChangeListener() {
+        @Override
+        public void onChildViewAdded(View parent, View child) {
+            mHeaderViewIndexDirty = true;
+            if (mOnHierarchyChangeListener != null) {
+                mOnHierarchyChangeListener.onChildViewAdded(parent, child);
+            }
+        }
+
+        @Override
+        public void onChildViewRemoved(View parent, View child) {
+            mHeaderViewIndexDirty = true;
+            if (child == mTarget) {
+                mTarget = null;
+                updateTargetScrollWatcher();
+                mChildScrollUpDirty = true;
+                mTargetWidthMeasureSpec = 0;
+                mTargetHeightMeasureSpec = 0;
+            }
+            if (mOnHierarchyChangeListener != null) {
+                mOnHierarchyChangeListener.onChildViewRemoved(parent, child);
+            }
+        }
+    };
+
+    @Override
+    public void setOnHierarchyChangeListener(OnHierarchyChangeListener listener) {
+        // The layout listens to its own children, chain the client listener behind it
+        mOnHierarchyChangeListener = listener;
+    }
+
+    /**
+     * Look the header up again after children were added or removed. A custom drawing order is
+     * only needed when the header is not the last child already.
+     */
+    private void resolveHeaderViewIndex() {
+        if (!mHeaderViewIndexDirty) {
+            return;
+        }
+        mHeaderViewIndexDirty = false;
+        mHeaderViewIndex = mHeaderView != null ? indexOfChild(mHeaderView) : -1;
+        ViewCompat.setChildrenDrawingOrderEnabled(this,
+                mHeaderViewIndex >= 0 && mHeaderViewIndex != getChildCount() - 1);
+    }
+
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        resolveHeaderViewIndex();
+        super.dispatchDraw(canvas);
     }
 
     @Override
@@ -375,141 +864,422 @@ public class InheritedSwipeRefreshLayout extends ViewGroup implements NestedScro
         }
     }
 
-    private void createHeaderView() {
-        mHeaderView = new SimpleHeaderViewImpl(getContext());
-        mHeaderView.setVisibility(View.GONE);
-        addView(mHeaderView);
-    }
-
     /**
-     * Set the listener to be notified when a refresh is triggered via the swipe
-     * gesture.
+     * Set the factory used to create the header view. The header is not created until the
+     * layout is pulled or {@link #setRefreshing(boolean)} is called with true. Setting a new
+     * factory drops the current header, if any, so that the next pull uses the new one.
+     *
+     * @param factory The factory to use, or null for the default {@link SimpleHeaderViewImpl}.
      */
-    public void setOnRefreshListener(OnRefreshListener listener) {
-        mListener = listener;
+    public void setHeaderViewFactory(@Nullable HeaderViewFactory factory) {
+        mHeaderViewFactory = factory != null ? factory : DEFAULT_HEADER_VIEW_FACTORY;
+        if (mHeaderPrewarmTask != null) {
+            mHeaderPrewarmTask.cancel();
+            mHeaderPrewarmTask = null;
+        }
+        dropHeaderView();
     }
 
     /**
-     * Notify the widget that refresh state has changed. Do not call this when
-     * refresh is triggered by a swipe gesture.
+     * Borrow the header from a pool shared with other layouts instead of creating one for this
+     * layout. The header is taken from the pool when the layout is pulled or starts refreshing,
+     * and given back once it has stayed at rest for a few seconds, so that a run of pulls keeps
+     * the same header, or when the layout is detached from its window. The pool's factory
+     * takes precedence over {@link #setHeaderViewFactory(HeaderViewFactory)}.
      *
-     * @param refreshing Whether or not the view should show refresh progress.
+     * @param pool The pool to borrow from, or null to let the layout own its header.
      */
-    public void setRefreshing(boolean refreshing) {
-        if (refreshing && mRefreshing != refreshing) {
-            // scale and show
-            mRefreshing = refreshing;
-            int endTarget = 0;
-            if (!mUsingCustomStart) {
-                endTarget = mHeadViewOffsetEnd + mOriginalOffsetTop;
-            } else {
-                endTarget = mHeadViewOffsetEnd;
-            }
-            setTargetOffsetTopAndBottom(endTarget - mCurrentTargetOffsetTop);
-            mNotify = false;
-            startScaleUpAnimation(mRefreshListener);
-        } else {
-            setRefreshing(refreshing, false /* notify */);
+    public void setHeaderViewPool(@Nullable HeaderViewPool pool) {
+        if (pool == mHeaderViewPool) {
+            return;
         }
+        if (mHeaderPrewarmTask != null) {
+            mHeaderPrewarmTask.cancel();
+            mHeaderPrewarmTask = null;
+        }
+        removeCallbacks(mReleaseHeaderRunnable);
+        dropHeaderView();
+        mHeaderViewPool = pool;
     }
 
-    private void startScaleUpAnimation(Animation.AnimationListener listener) {
-        mHeaderView.setVisibility(View.VISIBLE);
-        if (android.os.Build.VERSION.SDK_INT >= 11) {
-            // Pre API 11, alpha is used in place of scale up to show the
-            // progress circle appearing.
-            // Don't adjust the alpha during appearance otherwise.
-            mHeaderView.setAlpha(1);
+    /**
+     * Remove the header, giving it back to the pool it was borrowed from, if any.
+     */
+    private void dropHeaderView() {
+        if (mHeaderView == null) {
+            return;
         }
-        mScaleAnimation = new Animation() {
-            @Override
-            public void applyTransformation(float interpolatedTime, Transformation t) {
-                setAnimationProgress(interpolatedTime);
-            }
-        };
-        mScaleAnimation.setDuration(mMediumAnimationDuration);
-        if (listener != null) {
-            mHeaderView.setAnimationListener(listener);
+        final HeaderViewBase headerView = mHeaderView;
+        headerView.clearAnimation();
+        demoteLayers();
+        removeView(headerView);
+        mHeaderView = null;
+        mHeaderUpToDate = false;
+        mHeaderWidthMeasureSpec = 0;
+        if (mHeaderViewPool != null) {
+            mHeaderViewPool.release(headerView);
         }
-        mHeaderView.clearAnimation();
-        mHeaderView.startAnimation(mScaleAnimation);
     }
 
     /**
-     * Pre API 11, this does an alpha animation.
-     * @param progress
+     * Start creating the header view on a background thread, so that the first pull or
+     * {@link #setRefreshing(boolean)} attaches a ready-made header instead of inflating it on
+     * the UI thread. Call this ahead of time, e.g. right after the content view is set. The
+     * header factory must be able to run off the UI thread. Does nothing if the header exists,
+     * is already being prewarmed or is borrowed from a {@link HeaderViewPool}.
      */
-    void setAnimationProgress(float progress) {
-//        mHeaderView.setScaleX(progress);
-//        mHeaderView.setScaleY(progress);
+    public void prewarmHeaderView() {
+        if (mHeaderView != null || mHeaderPrewarmTask != null || mHeaderViewPool != null) {
+            return;
+        }
+        mHeaderPrewarmTask = HeaderPrewarmTask.start(getContext(), mHeaderViewFactory);
     }
 
-    private void setRefreshing(boolean refreshing, final boolean notify) {
-        if (mRefreshing != refreshing) {
-            mNotify = notify;
-            ensureTarget();
-            mRefreshing = refreshing;
-            if (mRefreshing) {
-                animateOffsetToCorrectPosition(mCurrentTargetOffsetTop, mRefreshListener);
-            } else {
-//                startScaleDownAnimation(mRefreshListener);
-                finishSpinner(mCurrentTargetOffsetTop);
+    private HeaderViewBase ensureHeaderView() {
+        if (mHeaderViewPool != null) {
+            // Keep the header if it was about to be given back
+            removeCallbacks(mReleaseHeaderRunnable);
+        }
+        if (mHeaderView == null) {
+            if (mHeaderViewPool != null) {
+                mHeaderView = mHeaderViewPool.acquire(getContext());
+            } else if (mHeaderPrewarmTask != null) {
+                mHeaderView = mHeaderPrewarmTask.take();
+                mHeaderPrewarmTask = null;
             }
+            if (mHeaderView == null) {
+                mHeaderView = mHeaderViewFactory.createHeaderView(getContext());
+            }
+            mHeaderView.setVisibility(View.GONE);
+            mHeaderWidthMeasureSpec = 0;
+            mDispatchedHeaderState = -1;
+            addView(mHeaderView);
+            if (getMeasuredWidth() > 0) {
+                // Place the header right away so that offsets applied before the next layout
+                // pass start from the current position
+                measureHeaderView();
+                layoutHeaderView();
+            }
+            dispatchHeaderProgress();
         }
+        return mHeaderView;
     }
 
-    void startScaleDownAnimation(Animation.AnimationListener listener) {
-        mScaleDownAnimation = new Animation() {
-            @Override
-            public void applyTransformation(float interpolatedTime, Transformation t) {
-                setAnimationProgress(1 - interpolatedTime);
-            }
-        };
-        mScaleDownAnimation.setDuration(SCALE_DOWN_DURATION);
-        mHeaderView.setAnimationListener(listener);
-        mHeaderView.clearAnimation();
-        mHeaderView.startAnimation(mScaleDownAnimation);
+    /**
+     * Set the listener to be notified when a refresh is triggered via the swipe
+     * gesture.
+     */
+    public void setOnRefreshListener(OnRefreshListener listener) {
+        mListener = listener;
     }
 
-    private void startProgressAlphaStartAnimation() {
-        mAlphaStartAnimation = startAlphaAnimation((int)mHeaderView.getAlpha() * 255, STARTING_PROGRESS_ALPHA);
+    /**
+     * Set the listener to be handed a {@link RefreshRequest} when a refresh is triggered,
+     * either by the swipe gesture or by {@link #requestRefresh()}. The layout hides the header
+     * when the request is finished, cancelled or times out.
+     */
+    public void setOnAsyncRefreshListener(@Nullable OnAsyncRefreshListener listener) {
+        mAsyncListener = listener;
     }
 
-    private void startProgressAlphaMaxAnimation() {
-        mAlphaMaxAnimation = startAlphaAnimation((int)mHeaderView.getAlpha() * 255, MAX_ALPHA);
+    /**
+     * Set how long a refresh may stay in flight. When it expires, the pending
+     * {@link RefreshRequest} is cancelled and the header is hidden.
+     *
+     * @param timeoutMillis The timeout in milliseconds, or 0 to wait forever.
+     */
+    public void setRefreshTimeout(long timeoutMillis) {
+        mRefreshTimeout = Math.max(0, timeoutMillis);
     }
 
-    private Animation startAlphaAnimation(final int startingAlpha, final int endingAlpha) {
-        Animation alpha = new Animation() {
-            @Override
-            public void applyTransformation(float interpolatedTime, Transformation t) {
-                mHeaderView.setAlpha(
-                        (float) ((startingAlpha + ((endingAlpha - startingAlpha) * interpolatedTime)) / 255.0));
-            }
-        };
-        alpha.setDuration(ALPHA_ANIMATION_DURATION);
-        // Clear out the previous animation listeners.
-        mHeaderView.setAnimationListener(null);
-        mHeaderView.clearAnimation();
-        mHeaderView.startAnimation(alpha);
-        return alpha;
+    /**
+     * Set for how long content stays fresh after a successful refresh, i.e. one whose
+     * {@link RefreshRequest#finish()} was called. Refreshes ended with
+     * {@link #setRefreshing(boolean)} or by the timeout do not count. A refresh triggered
+     * within that time does not notify the listeners: the header shows that the content is
+     * already up to date for a moment and goes away.
+     *
+     * @param ttlMillis The freshness time to live in milliseconds, or 0 to always refresh.
+     */
+    public void setRefreshFreshnessTtl(long ttlMillis) {
+        mFreshnessTtl = Math.max(0, ttlMillis);
     }
 
     /**
-     * @return Whether the SwipeRefreshWidget is actively showing refresh
-     *         progress.
+     * Let the scheduler decide when a refresh triggered on this layout notifies the listeners,
+     * to cap how many layouts refresh at the same time. While its refresh is queued the header
+     * rests at the refreshing position in the {@link IHeaderView#STATE_PENDING} state. Refreshes
+     * started with {@link #setRefreshing(boolean)} are not scheduled, the caller runs them.
+     *
+     * @param scheduler The scheduler, e.g. {@link RefreshScheduler#getInstance()}, or null to
+     *        notify the listeners as soon as a refresh is triggered, the default.
      */
-    public boolean isRefreshing() {
-        return mRefreshing;
+    public void setRefreshScheduler(@Nullable RefreshScheduler scheduler) {
+        if (scheduler == mRefreshScheduler) {
+            return;
+        }
+        final boolean queued = mRefreshQueued;
+        leaveRefreshScheduler();
+        mRefreshScheduler = scheduler;
+        if (queued) {
+            // Queue again with the new scheduler, or start right away without one
+            scheduleRefresh();
+        }
     }
 
-    private void ensureTarget() {
-        // Don't bother getting the parent height if the parent hasn't been laid
+    /**
+     * Record every touch event dispatched to this layout, to replay a gesture performed on a
+     * device in a local test.
+     *
+     * @param recorder The recorder to append the events to, or null to stop recording.
+     */
+    public void setGestureRecorder(@Nullable GestureRecorder recorder) {
+        mGestureRecorder = recorder;
+    }
+
+    /**
+     * Enable named systrace sections around the measure, layout, touch, nested scrolling and
+     * animation paths of every InheritedSwipeRefreshLayout, e.g. in debug builds, to see where the
+     * frame time goes during a pull. Costs nothing noticeable while disabled, the default.
+     */
+    public static void setTraceEnabled(boolean enabled) {
+        LayoutTrace.setEnabled(enabled);
+    }
+
+    /**
+     * Trigger a refresh when the pull is released fast enough, even if it did not reach the
+     * trigger distance. The pull still has to cover half of that distance.
+     *
+     * @param pixelsPerSecond Downward release velocity that triggers a refresh, or 0 to only
+     *        trigger on distance.
+     */
+    public void setFlingToRefreshVelocity(float pixelsPerSecond) {
+        mFlingToRefreshVelocity = Math.max(0, pixelsPerSecond);
+    }
+
+    /**
+     * Set the listener to be notified as soon as a pull is likely to end in a refresh, so that
+     * it can warm up connections or start the request before the user releases.
+     *
+     * @param listener The listener to notify, or null to disable speculative refreshes.
+     * @param threshold Fraction of the trigger distance, between 0 and 1, at which
+     *        {@link OnSpeculativeRefreshListener#onPrepareRefresh()} is called. Ignored when
+     *        the listener is null.
+     */
+    public void setOnSpeculativeRefreshListener(@Nullable OnSpeculativeRefreshListener listener,
+            float threshold) {
+        if (listener != null && (threshold <= 0 || threshold > 1)) {
+            throw new IllegalArgumentException("threshold must be in (0, 1], was " + threshold);
+        }
+        if (listener != mSpeculativeListener) {
+            abortSpeculativeRefresh();
+        }
+        mSpeculativeListener = listener;
+        mSpeculativeThreshold = listener != null ? threshold : 0;
+    }
+
+    /**
+     * Forget the last successful refresh, so that the next trigger refreshes whatever the
+     * freshness time to live.
+     */
+    public void invalidateFreshness() {
+        mLastRefreshCompletedTime = -1;
+    }
+
+    /**
+     * @return How many triggered refreshes notified the listeners.
+     */
+    public int getExecutedRefreshCount() {
+        return mExecutedRefreshCount;
+    }
+
+    /**
+     * @return How many triggered refreshes were skipped because the content was still fresh.
+     */
+    public int getSkippedRefreshCount() {
+        return mSkippedRefreshCount;
+    }
+
+    /**
+     * Show the header and notify the listeners, as if the user had pulled to refresh. Calls
+     * made while a refresh is shown or in flight are folded into it.
+     *
+     * @return Whether a new refresh was started.
+     */
+    public boolean requestRefresh() {
+        if (mStateMachine.isRefreshing() || mRefreshRequest != null || !isEnabled()) {
+            return false;
+        }
+        setRefreshing(true, true /* notify */);
+        return true;
+    }
+
+    /**
+     * @return The refresh that has been notified and not completed yet, or null.
+     */
+    @Nullable
+    public RefreshRequest getRefreshRequest() {
+        return mRefreshRequest;
+    }
+
+    /**
+     * Notify the widget that refresh state has changed. Do not call this when
+     * refresh is triggered by a swipe gesture.
+     *
+     * @param refreshing Whether or not the view should show refresh progress.
+     */
+    public void setRefreshing(boolean refreshing) {
+        if (refreshing && !mStateMachine.isRefreshing()) {
+            // scale and show
+            mStateMachine.moveTo(RefreshStateMachine.STATE_REFRESHING);
+            mHeaderState = IHeaderView.STATE_REFRESHING;
+            setHeaderUpToDate(false);
+            int endTarget = 0;
+            if (!mUsingCustomStart) {
+                endTarget = mHeadViewOffsetEnd + mOriginalOffsetTop;
+            } else {
+                endTarget = mHeadViewOffsetEnd;
+            }
+            setTargetOffsetTopAndBottom(endTarget - mCurrentTargetOffsetTop);
+            startScaleUpAnimation(mRefreshListener);
+        } else {
+            if (!refreshing) {
+                completeRefreshRequest();
+            }
+            setRefreshing(refreshing, false /* notify */);
+        }
+    }
+
+    private void startScaleUpAnimation(Animation.AnimationListener listener) {
+        ensureHeaderView();
+        mHeaderView.setVisibility(View.VISIBLE);
+        if (android.os.Build.VERSION.SDK_INT >= 11) {
+            // Pre API 11, alpha is used in place of scale up to show the
+            // progress circle appearing.
+            // Don't adjust the alpha during appearance otherwise.
+            mHeaderView.setAlpha(1);
+        }
+        if (listener != null) {
+            mHeaderView.setAnimationListener(listener);
+        }
+        startHeaderAnimation(ANIMATION_SCALE_UP, mMediumAnimationDuration,
+                mAccelerateDecelerateInterpolator);
+    }
+
+    /**
+     * Pre API 11, this does an alpha animation.
+     * @param progress
+     */
+    void setAnimationProgress(float progress) {
+//        mHeaderView.setScaleX(progress);
+//        mHeaderView.setScaleY(progress);
+    }
+
+    private void setRefreshing(boolean refreshing, final boolean notify) {
+        if (mStateMachine.isRefreshing() != refreshing) {
+            ensureTarget();
+            if (refreshing) {
+                mStateMachine.moveTo(notify ? RefreshStateMachine.STATE_TRIGGERED
+                        : RefreshStateMachine.STATE_REFRESHING);
+                setHeaderUpToDate(false);
+            } else {
+                mStateMachine.moveTo(RefreshStateMachine.STATE_RETURNING_TO_START);
+            }
+            ensureHeaderView();
+            setHeaderState(refreshing ? IHeaderView.STATE_REFRESHING
+                    : IHeaderView.STATE_COMPLETING);
+            if (refreshing) {
+                animateOffsetToCorrectPosition(mCurrentTargetOffsetTop, mRefreshListener);
+            } else {
+//                startScaleDownAnimation(mRefreshListener);
+                finishSpinner(mCurrentTargetOffsetTop, 0);
+            }
+        }
+    }
+
+    void startScaleDownAnimation(Animation.AnimationListener listener) {
+        mHeaderView.setAnimationListener(listener);
+        startHeaderAnimation(ANIMATION_SCALE_DOWN, SCALE_DOWN_DURATION,
+                mAccelerateDecelerateInterpolator);
+    }
+
+    private void startProgressAlphaStartAnimation() {
+        startAlphaAnimation((int)mHeaderView.getAlpha() * 255, STARTING_PROGRESS_ALPHA);
+    }
+
+    private void startProgressAlphaMaxAnimation() {
+        startAlphaAnimation((int)mHeaderView.getAlpha() * 255, MAX_ALPHA);
+    }
+
+    private void startAlphaAnimation(int startingAlpha, int endingAlpha) {
+        mStartingAlpha = startingAlpha;
+        mEndingAlpha = endingAlpha;
+        // Clear out the previous animation listeners.
+        mHeaderView.setAnimationListener(null);
+        startHeaderAnimation(ANIMATION_ALPHA, ALPHA_ANIMATION_DURATION,
+                mAccelerateDecelerateInterpolator);
+    }
+
+    /**
+     * Restart the shared header animation as the given kind of transition.
+     */
+    private void startHeaderAnimation(int type, long duration, Interpolator interpolator) {
+        // The interrupted leg does not settle, this one takes over from where it stopped
+        mHeaderAnimation.setAnimationListener(null);
+        mHeaderView.clearAnimation();
+        mHeaderAnimation.setAnimationListener(mSettleListener);
+        promoteLayers();
+        mHeaderAnimation.reset();
+        mHeaderAnimation.mType = type;
+        mHeaderAnimation.setDuration(duration);
+        mHeaderAnimation.setInterpolator(interpolator);
+        mHeaderView.startAnimation(mHeaderAnimation);
+    }
+
+    /**
+     * @return Whether a header transition has started and not ended yet.
+     */
+    private boolean isHeaderAnimating() {
+        return mHeaderView != null && mHeaderView.getAnimation() == mHeaderAnimation
+                && !mHeaderAnimation.hasEnded();
+    }
+
+    /**
+     * @return Whether the SwipeRefreshWidget is actively showing refresh
+     *         progress.
+     */
+    public boolean isRefreshing() {
+        return mStateMachine.isRefreshing();
+    }
+
+    /**
+     * Print the state of the refresh cycle and its recent transitions with their times, e.g. from
+     * {@code Activity.dump()}, to find out in a bug report why a refresh got stuck or was slow.
+     *
+     * @param prefix Prefix for every line, usually indentation.
+     * @param writer Where to print.
+     */
+    public void dump(@NonNull String prefix, @NonNull PrintWriter writer) {
+        writer.print(prefix);
+        writer.print(InheritedSwipeRefreshLayout.class.getSimpleName());
+        writer.print(" refreshRequest=");
+        writer.print(mRefreshRequest);
+        writer.print(" executedRefreshes=");
+        writer.print(mExecutedRefreshCount);
+        writer.print(" skippedRefreshes=");
+        writer.print(mSkippedRefreshCount);
+        writer.print(" refreshQueued=");
+        writer.println(mRefreshQueued);
+        mStateMachine.dump(prefix + "  ", writer);
+    }
+
+    private void ensureTarget() {
+        // Don't bother getting the parent height if the parent hasn't been laid
         // out yet.
         if (mTarget == null) {
             for (int i = 0; i < getChildCount(); i++) {
                 View child = getChildAt(i);
-                if (!child.equals(mHeaderView)) {
+                if (!child.equals(mHeaderView) && !child.equals(mFooterView)) {
                     mTarget = child;
                     break;
                 }
@@ -524,10 +1294,30 @@ public class InheritedSwipeRefreshLayout extends ViewGroup implements NestedScro
      */
     public void setDistanceToTriggerSync(int distance) {
         mTotalDragDistance = distance;
+        mDragCurveDirty = true;
+    }
+
+    /**
+     * Set the curve that maps the pull distance to the header displacement.
+     *
+     * @param curve The curve to use, or null for {@link DragCurves#SLINGSHOT}.
+     */
+    public void setDragCurve(@Nullable DragCurve curve) {
+        mDragCurve = curve != null ? curve : DragCurves.SLINGSHOT;
+        mDragCurveDirty = true;
     }
 
     @Override
     protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        final boolean traced = LayoutTrace.begin(LayoutTrace.LAYOUT);
+        try {
+            layoutChildViews(changed);
+        } finally {
+            LayoutTrace.end(traced);
+        }
+    }
+
+    private void layoutChildViews(boolean changed) {
         final int width = getMeasuredWidth();
         final int height = getMeasuredHeight();
         if (getChildCount() == 0) {
@@ -541,17 +1331,55 @@ public class InheritedSwipeRefreshLayout extends ViewGroup implements NestedScro
         }
         final View child = mTarget;
         final int childLeft = getPaddingLeft();
-        final int childTop = getPaddingTop();
         final int childWidth = width - getPaddingLeft() - getPaddingRight();
-        final int childHeight = height - getPaddingTop() - getPaddingBottom();
-        child.layout(childLeft, childTop, childLeft + childWidth, childTop + childHeight);
+        final int childHeight = height - getPaddingTop() - getPaddingBottom() - getFooterInset();
+        if (mTranslationOffsetEnabled) {
+            // The layout pass places the views at their current offset, fold the pending
+            // translation into it
+            mCommittedOffsetTop = mCurrentTargetOffsetTop;
+        }
+        // The target follows the header, keep the offset it was moved by
+        final int childTop = getPaddingTop() + mCommittedOffsetTop - mOriginalOffsetTop;
+        if (changed || child.isLayoutRequested() || child.getLeft() != childLeft
+                || child.getTop() != childTop || child.getWidth() != childWidth
+                || child.getHeight() != childHeight) {
+            child.layout(childLeft, childTop, childLeft + childWidth, childTop + childHeight);
+        }
+        if (mTranslationOffsetEnabled) {
+            child.setTranslationY(0);
+        }
+        if (mHeaderView != null) {
+            layoutHeaderView();
+        }
+        if (mFooterView != null) {
+            final int footerBottom = height - getPaddingBottom();
+            mFooterView.layout(childLeft, footerBottom - mFooterView.getMeasuredHeight(),
+                    childLeft + childWidth, footerBottom);
+        }
+    }
+
+    private void layoutHeaderView() {
+        final int childLeft = getPaddingLeft();
+        final int childWidth = getMeasuredWidth() - getPaddingLeft() - getPaddingRight();
         int headerHeight = mHeaderView.getMeasuredHeight();
-        mHeaderView.layout(childLeft, mCurrentTargetOffsetTop,
-                childLeft + childWidth, mCurrentTargetOffsetTop + headerHeight);
+        mHeaderView.layout(childLeft, mCommittedOffsetTop,
+                childLeft + childWidth, mCommittedOffsetTop + headerHeight);
+        if (mTranslationOffsetEnabled) {
+            mHeaderView.setTranslationY(mCurrentTargetOffsetTop - mCommittedOffsetTop);
+        }
     }
 
     @Override
     public void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        final boolean traced = LayoutTrace.begin(LayoutTrace.MEASURE);
+        try {
+            measureChildViews(widthMeasureSpec, heightMeasureSpec);
+        } finally {
+            LayoutTrace.end(traced);
+        }
+    }
+
+    private void measureChildViews(int widthMeasureSpec, int heightMeasureSpec) {
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
         if (mTarget == null) {
             ensureTarget();
@@ -559,22 +1387,184 @@ public class InheritedSwipeRefreshLayout extends ViewGroup implements NestedScro
         if (mTarget == null) {
             return;
         }
-        mTarget.measure(MeasureSpec.makeMeasureSpec(
-                getMeasuredWidth() - getPaddingLeft() - getPaddingRight(),
-                MeasureSpec.EXACTLY), MeasureSpec.makeMeasureSpec(
-                getMeasuredHeight() - getPaddingTop() - getPaddingBottom(), MeasureSpec.EXACTLY));
-        mHeaderView.measure(MeasureSpec.makeMeasureSpec(getMeasuredWidth() - getPaddingLeft() - getPaddingRight(), MeasureSpec.EXACTLY),
-                MeasureSpec.makeMeasureSpec(mHeaderHeight, MeasureSpec.EXACTLY));
-        mHeaderViewIndex = -1;
-        // Get the index of the circleview.
-        for (int index = 0; index < getChildCount(); index++) {
-            if (getChildAt(index) == mHeaderView) {
-                mHeaderViewIndex = index;
-                break;
+        final int targetWidthMeasureSpec = MeasureSpec.makeMeasureSpec(
+                getMeasuredWidth() - getPaddingLeft() - getPaddingRight(), MeasureSpec.EXACTLY);
+        if (mFooterView != null) {
+            // Measured first, the target makes room for it while it is visible
+            mFooterView.measure(targetWidthMeasureSpec,
+                    MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED));
+        }
+        final int targetHeightMeasureSpec = MeasureSpec.makeMeasureSpec(
+                getMeasuredHeight() - getPaddingTop() - getPaddingBottom() - getFooterInset(),
+                MeasureSpec.EXACTLY);
+        // Skip children whose specs did not change and that did not ask for a new measure
+        if (mTarget.isLayoutRequested() || targetWidthMeasureSpec != mTargetWidthMeasureSpec
+                || targetHeightMeasureSpec != mTargetHeightMeasureSpec) {
+            mTarget.measure(targetWidthMeasureSpec, targetHeightMeasureSpec);
+            mTargetWidthMeasureSpec = targetWidthMeasureSpec;
+            mTargetHeightMeasureSpec = targetHeightMeasureSpec;
+        }
+        if (mHeaderView != null) {
+            measureHeaderView();
+        }
+        resolveHeaderViewIndex();
+    }
+
+    private void measureHeaderView() {
+        final int widthMeasureSpec = MeasureSpec.makeMeasureSpec(
+                getMeasuredWidth() - getPaddingLeft() - getPaddingRight(), MeasureSpec.EXACTLY);
+        if (mHeaderView.isLayoutRequested() || widthMeasureSpec != mHeaderWidthMeasureSpec) {
+            mHeaderView.measure(widthMeasureSpec,
+                    MeasureSpec.makeMeasureSpec(mHeaderHeight, MeasureSpec.EXACTLY));
+            mHeaderWidthMeasureSpec = widthMeasureSpec;
+        }
+    }
+
+    /**
+     * Set the listener to be notified when the target reaches its end, or comes within the
+     * prefetch distance of it, so that more content can be loaded.
+     */
+    public void setOnLoadMoreListener(@Nullable OnLoadMoreListener listener) {
+        mLoadMoreListener = listener;
+        mLoadMoreScrollPosition = getTargetScrollPosition();
+    }
+
+    /**
+     * Set the factory used to create the footer shown while more content is loading.
+     *
+     * @param factory The factory to use, or null for the default {@link SimpleFooterViewImpl}.
+     */
+    public void setFooterViewFactory(@Nullable HeaderViewFactory factory) {
+        mFooterViewFactory = factory != null ? factory : DEFAULT_FOOTER_VIEW_FACTORY;
+        if (mFooterView != null) {
+            removeView(mFooterView);
+            mFooterView = null;
+            if (mLoadingMore) {
+                showFooterView();
             }
         }
     }
 
+    /**
+     * Start loading more content before the user reaches the end of the target, to hide the
+     * latency of the next page. Applies to targets implementing {@link ScrollingView}, such as
+     * RecyclerView and NestedScrollView.
+     *
+     * @param distance Distance in pixels from the bottom of the content at which loading starts.
+     */
+    public void setLoadMorePrefetchDistance(int distance) {
+        mLoadMorePrefetchDistance = Math.max(0, distance);
+    }
+
+    /**
+     * Start loading more content before the user reaches the end of the target. Applies to
+     * targets extending {@link AbsListView}, such as ListView and GridView.
+     *
+     * @param itemCount Number of items left below the last visible one at which loading starts.
+     */
+    public void setLoadMorePrefetchItemCount(int itemCount) {
+        mLoadMorePrefetchItemCount = Math.max(0, itemCount);
+    }
+
+    /**
+     * Notify the widget that loading more content has started or finished. Call this with
+     * false when the content requested by {@link OnLoadMoreListener#onLoadMore()} arrived.
+     *
+     * @param loadingMore Whether the footer should be shown.
+     */
+    public void setLoadingMore(boolean loadingMore) {
+        if (mLoadingMore == loadingMore) {
+            return;
+        }
+        mLoadingMore = loadingMore;
+        if (loadingMore) {
+            showFooterView();
+        } else if (mFooterView != null) {
+            mFooterView.setVisibility(View.GONE);
+        }
+    }
+
+    private void showFooterView() {
+        if (mFooterView == null) {
+            mFooterView = mFooterViewFactory.createHeaderView(getContext());
+            addView(mFooterView);
+        }
+        mFooterView.setVisibility(View.VISIBLE);
+    }
+
+    /**
+     * @return The height the target gives up at its bottom to the visible footer.
+     */
+    private int getFooterInset() {
+        return mFooterView != null && mFooterView.getVisibility() != View.GONE
+                ? mFooterView.getMeasuredHeight() : 0;
+    }
+
+    /**
+     * @return Whether the footer is showing that more content is loading.
+     */
+    public boolean isLoadingMore() {
+        return mLoadingMore;
+    }
+
+    /**
+     * Called when something in the window scrolled, which may or may not be the target.
+     */
+    @VisibleForTesting
+    void onWindowScrollChanged() {
+        if (mLoadMoreListener == null || mLoadingMore) {
+            return;
+        }
+        ensureTarget();
+        final long scrollPosition = getTargetScrollPosition();
+        if (scrollPosition == mLoadMoreScrollPosition) {
+            // Another view scrolled, e.g. a sibling list or the ancestors of a short target
+            return;
+        }
+        mLoadMoreScrollPosition = scrollPosition;
+        checkLoadMore();
+    }
+
+    /**
+     * @return A value that changes whenever the target scrolls, 0 without a target.
+     */
+    private long getTargetScrollPosition() {
+        if (mTarget instanceof ScrollingView) {
+            return ((ScrollingView) mTarget).computeVerticalScrollOffset();
+        } else if (mTarget instanceof AbsListView) {
+            final AbsListView listView = (AbsListView) mTarget;
+            final View firstChild = listView.getChildAt(0);
+            final int firstTop = firstChild != null ? firstChild.getTop() : 0;
+            return ((long) listView.getFirstVisiblePosition() << 32) | (firstTop & 0xffffffffL);
+        } else if (mTarget != null) {
+            return mTarget.getScrollY();
+        }
+        return 0;
+    }
+
+    private void checkLoadMore() {
+        if (mTarget == null || !isEnabled() || mStateMachine.isRefreshing()) {
+            return;
+        }
+        final boolean nearEnd;
+        if (mTarget instanceof AbsListView && mLoadMorePrefetchItemCount > 0) {
+            final AbsListView listView = (AbsListView) mTarget;
+            nearEnd = listView.getCount() - 1 - listView.getLastVisiblePosition()
+                    <= mLoadMorePrefetchItemCount;
+        } else if (mTarget instanceof ScrollingView && mLoadMorePrefetchDistance > 0) {
+            final ScrollingView scrollingView = (ScrollingView) mTarget;
+            nearEnd = scrollingView.computeVerticalScrollRange()
+                    - scrollingView.computeVerticalScrollOffset()
+                    - scrollingView.computeVerticalScrollExtent() <= mLoadMorePrefetchDistance;
+        } else {
+            nearEnd = !mTarget.canScrollVertically(1);
+        }
+        if (nearEnd) {
+            setLoadingMore(true);
+            mLoadMoreListener.onLoadMore();
+        }
+    }
+
     /**
      * Get the height of the headerview that is displayed as part of the
      * swipe to refresh layout.
@@ -593,6 +1583,46 @@ public class InheritedSwipeRefreshLayout extends ViewGroup implements NestedScro
         if (mChildScrollUpCallback != null) {
             return mChildScrollUpCallback.canChildScrollUp(this, mTarget);
         }
+        if (mChildScrollUpCacheEnabled && isChildScrollUpCacheable()) {
+            if (mChildScrollUpDirty) {
+                mCachedChildScrollUp = queryChildScrollUp();
+                mChildScrollUpDirty = false;
+            }
+            return mCachedChildScrollUp;
+        }
+        return queryChildScrollUp();
+    }
+
+    /**
+     * Whether the target reports its own scrolls as they happen, so that a cached answer can be
+     * trusted between two traversals.
+     */
+    private boolean isChildScrollUpCacheable() {
+        updateTargetScrollWatcher();
+        return mTargetScrollWatcher != null;
+    }
+
+    /**
+     * Watch the scrolls of the current target while the cache is enabled and the layout is
+     * attached, and stop watching any other view.
+     */
+    private void updateTargetScrollWatcher() {
+        final View target = mChildScrollUpCacheEnabled && ViewCompat.isAttachedToWindow(this)
+                ? mTarget : null;
+        if (mTargetScrollWatcher != null) {
+            if (mTargetScrollWatcher.mTarget == target) {
+                return;
+            }
+            mTargetScrollWatcher.unwatch();
+            mTargetScrollWatcher = null;
+        }
+        if (target != null) {
+            mTargetScrollWatcher = TargetScrollWatcher.watch(target, mTargetScrollListener);
+        }
+        mChildScrollUpDirty = true;
+    }
+
+    private boolean queryChildScrollUp() {
         if (mTarget instanceof ListView) {
             return ListViewCompat.canScrollList((ListView) mTarget, -1);
         }
@@ -608,28 +1638,64 @@ public class InheritedSwipeRefreshLayout extends ViewGroup implements NestedScro
         mChildScrollUpCallback = callback;
     }
 
+    /**
+     * Answer {@link #canChildScrollUp()} from a cached value, refreshed whenever the target
+     * reports a scroll, the view tree reports a layout and at the start of every gesture,
+     * instead of querying the target on every touch event. Only applies to a RecyclerView
+     * target, which takes a scroll listener of the layout's own next to those of the app. Other
+     * targets, including lists and scroll views whose single scroll listener belongs to the app,
+     * and an {@link OnChildScrollUpCallback} are still queried every time.
+     */
+    public void setChildScrollUpCacheEnabled(boolean enabled) {
+        mChildScrollUpCacheEnabled = enabled;
+        updateTargetScrollWatcher();
+        mChildScrollUpDirty = true;
+    }
+
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent ev) {
+        if (mGestureRecorder != null) {
+            mGestureRecorder.record(ev);
+        }
+        // Every event passes here exactly once, whether it is intercepted, handled by this
+        // layout or by the target
+        trackVelocity(ev);
+        return super.dispatchTouchEvent(ev);
+    }
+
     @Override
     public boolean onInterceptTouchEvent(MotionEvent ev) {
+        final boolean traced = LayoutTrace.begin(LayoutTrace.INTERCEPT_TOUCH_EVENT);
+        try {
+            return interceptTouchEvent(ev);
+        } finally {
+            LayoutTrace.end(traced);
+        }
+    }
+
+    private boolean interceptTouchEvent(MotionEvent ev) {
         ensureTarget();
 
         final int action = ev.getActionMasked();
         int pointerIndex;
 
-        if (mReturningToStart && action == MotionEvent.ACTION_DOWN) {
-            mReturningToStart = false;
+        if (action == MotionEvent.ACTION_DOWN) {
+            // Never trust a cached answer across gestures
+            mChildScrollUpDirty = true;
         }
 
-        if (!isEnabled() || mReturningToStart || canChildScrollUp()
-                || mRefreshing || mNestedScrollInProgress) {
+        if (!isEnabled() || canChildScrollUp() || mStateMachine.isRefreshing()
+                || mStateMachine.isNestedScrollInProgress()) {
             // Fail fast if we're not in a state where a swipe is possible
             return false;
         }
 
         switch (action) {
             case MotionEvent.ACTION_DOWN:
-                setTargetOffsetTopAndBottom(mOriginalOffsetTop - mHeaderView.getTop());
+                setTargetOffsetTopAndBottom(mOriginalOffsetTop - mCurrentTargetOffsetTop);
                 mActivePointerId = ev.getPointerId(0);
-                mIsBeingDragged = false;
+                mStateMachine.moveFrom(RefreshStateMachine.STATE_DRAGGING,
+                        RefreshStateMachine.STATE_IDLE);
 
                 pointerIndex = ev.findPointerIndex(mActivePointerId);
                 if (pointerIndex < 0) {
@@ -648,8 +1714,7 @@ public class InheritedSwipeRefreshLayout extends ViewGroup implements NestedScro
                 if (pointerIndex < 0) {
                     return false;
                 }
-                final float y = ev.getY(pointerIndex);
-                startDragging(y);
+                startDragging(ev, pointerIndex);
                 break;
 
             case MotionEvent.ACTION_POINTER_UP:
@@ -658,12 +1723,13 @@ public class InheritedSwipeRefreshLayout extends ViewGroup implements NestedScro
 
             case MotionEvent.ACTION_UP:
             case MotionEvent.ACTION_CANCEL:
-                mIsBeingDragged = false;
+                mStateMachine.moveFrom(RefreshStateMachine.STATE_DRAGGING,
+                        RefreshStateMachine.STATE_IDLE);
                 mActivePointerId = INVALID_POINTER;
                 break;
         }
 
-        return mIsBeingDragged;
+        return mStateMachine.isBeingDragged();
     }
 
     @Override
@@ -683,27 +1749,80 @@ public class InheritedSwipeRefreshLayout extends ViewGroup implements NestedScro
 
     @Override
     public boolean onStartNestedScroll(View child, View target, int nestedScrollAxes) {
-        return isEnabled() && !mReturningToStart && !mRefreshing
-                && (nestedScrollAxes & ViewCompat.SCROLL_AXIS_VERTICAL) != 0;
+        return onStartNestedScroll(child, target, nestedScrollAxes, ViewCompat.TYPE_TOUCH);
     }
 
     @Override
     public void onNestedScrollAccepted(View child, View target, int axes) {
-        // Reset the counter of how much leftover scroll needs to be consumed.
-        mNestedScrollingParentHelper.onNestedScrollAccepted(child, target, axes);
-        // Dispatch up to the nested parent
-        startNestedScroll(axes & ViewCompat.SCROLL_AXIS_VERTICAL);
-        mTotalUnconsumed = 0;
-        mNestedScrollInProgress = true;
+        onNestedScrollAccepted(child, target, axes, ViewCompat.TYPE_TOUCH);
     }
 
     @Override
     public void onNestedPreScroll(View target, int dx, int dy, int[] consumed) {
+        onNestedPreScroll(target, dx, dy, consumed, ViewCompat.TYPE_TOUCH);
+    }
+
+    @Override
+    public int getNestedScrollAxes() {
+        return mNestedScrollingParentHelper.getNestedScrollAxes();
+    }
+
+    @Override
+    public void onStopNestedScroll(View target) {
+        onStopNestedScroll(target, ViewCompat.TYPE_TOUCH);
+    }
+
+    @Override
+    public void onNestedScroll(final View target, final int dxConsumed, final int dyConsumed,
+                               final int dxUnconsumed, final int dyUnconsumed) {
+        onNestedScroll(target, dxConsumed, dyConsumed, dxUnconsumed, dyUnconsumed,
+                ViewCompat.TYPE_TOUCH);
+    }
+
+    // NestedScrollingParent2
+
+    @Override
+    public boolean onStartNestedScroll(View child, View target, int axes, int type) {
+        if (!isEnabled() || (axes & ViewCompat.SCROLL_AXIS_VERTICAL) == 0) {
+            return false;
+        }
+        if (type == ViewCompat.TYPE_TOUCH) {
+            return !mStateMachine.isRefreshing();
+        }
+        // Flings never move the header, they are only worth accepting to pass them on
+        return isNestedScrollingEnabled();
+    }
+
+    @Override
+    public void onNestedScrollAccepted(View child, View target, int axes, int type) {
+        mNestedScrollingParentHelper.onNestedScrollAccepted(child, target, axes, type);
+        // Dispatch up to the nested parent
+        startNestedScroll(axes & ViewCompat.SCROLL_AXIS_VERTICAL, type);
+        if (type == ViewCompat.TYPE_TOUCH) {
+            // Reset the counter of how much leftover scroll needs to be consumed.
+            mTotalUnconsumed = 0;
+            mNestedFlingVelocityY = 0;
+            mStateMachine.moveTo(RefreshStateMachine.STATE_NESTED_SCROLLING);
+        }
+    }
+
+    @Override
+    public void onNestedPreScroll(View target, int dx, int dy, int[] consumed, int type) {
+        final boolean traced = LayoutTrace.begin(LayoutTrace.NESTED_PRE_SCROLL);
+        try {
+            nestedPreScroll(dx, dy, consumed, type);
+        } finally {
+            LayoutTrace.end(traced);
+        }
+    }
+
+    private void nestedPreScroll(int dx, int dy, int[] consumed, int type) {
         // If we are in the middle of consuming, a scroll, then we want to move the spinner back up
-        // before allowing the list to scroll
-        if (dy > 0 && mTotalUnconsumed > 0) {
+        // before allowing the list to scroll. Only touch scrolls ever pull the header out.
+        if (type == ViewCompat.TYPE_TOUCH && dy > 0 && mTotalUnconsumed > 0) {
             if (dy > mTotalUnconsumed) {
-                consumed[1] = dy - (int) mTotalUnconsumed;
+                // Only what was left of the pull is consumed, the rest scrolls the list
+                consumed[1] = (int) mTotalUnconsumed;
                 mTotalUnconsumed = 0;
             } else {
                 mTotalUnconsumed -= dy;
@@ -716,44 +1835,66 @@ public class InheritedSwipeRefreshLayout extends ViewGroup implements NestedScro
         // view, they mean to hide it again before scrolling the child view
         // If we get back to mTotalUnconsumed == 0 and there is more to go, hide
         // the circle so it isn't exposed if its blocking content is moved
-        if (mUsingCustomStart && dy > 0 && mTotalUnconsumed == 0
-                && Math.abs(dy - consumed[1]) > 0) {
+        if (type == ViewCompat.TYPE_TOUCH && mUsingCustomStart && dy > 0 && mTotalUnconsumed == 0
+                && Math.abs(dy - consumed[1]) > 0 && mHeaderView != null) {
             mHeaderView.setVisibility(View.GONE);
         }
 
         // Now let our nested parent consume the leftovers
         final int[] parentConsumed = mParentScrollConsumed;
-        if (dispatchNestedPreScroll(dx - consumed[0], dy - consumed[1], parentConsumed, null)) {
+        parentConsumed[0] = 0;
+        parentConsumed[1] = 0;
+        if (dispatchNestedPreScroll(dx - consumed[0], dy - consumed[1], parentConsumed, null,
+                type)) {
             consumed[0] += parentConsumed[0];
             consumed[1] += parentConsumed[1];
         }
     }
 
     @Override
-    public int getNestedScrollAxes() {
-        return mNestedScrollingParentHelper.getNestedScrollAxes();
-    }
-
-    @Override
-    public void onStopNestedScroll(View target) {
-        mNestedScrollingParentHelper.onStopNestedScroll(target);
-        mNestedScrollInProgress = false;
-        // Finish the spinner for nested scrolling if we ever consumed any
-        // unconsumed nested scroll
-        if (mTotalUnconsumed > 0) {
-            finishSpinner(mTotalUnconsumed);
-            mTotalUnconsumed = 0;
+    public void onStopNestedScroll(View target, int type) {
+        mNestedScrollingParentHelper.onStopNestedScroll(target, type);
+        if (type == ViewCompat.TYPE_TOUCH) {
+            // Finish the spinner for nested scrolling if we ever consumed any
+            // unconsumed nested scroll
+            final boolean pulled = mTotalUnconsumed > 0;
+            if (pulled) {
+                finishSpinner(mTotalUnconsumed, mNestedFlingVelocityY);
+                mTotalUnconsumed = 0;
+            }
+            mStateMachine.moveFrom(RefreshStateMachine.STATE_NESTED_SCROLLING,
+                    RefreshStateMachine.STATE_IDLE);
+            if (!pulled && !isHeaderAnimating()) {
+                // The pull was pushed back to its start, if any, so nothing animates the header
+                // to rest: end the drag phase, demote the layers and commit the offset here
+                onHeaderSettled();
+            }
         }
         // Dispatch up our nested parent
-        stopNestedScroll();
+        stopNestedScroll(type);
     }
 
     @Override
     public void onNestedScroll(final View target, final int dxConsumed, final int dyConsumed,
-                               final int dxUnconsumed, final int dyUnconsumed) {
+                               final int dxUnconsumed, final int dyUnconsumed, int type) {
+        final boolean traced = LayoutTrace.begin(LayoutTrace.NESTED_SCROLL);
+        try {
+            nestedScroll(dxConsumed, dyConsumed, dxUnconsumed, dyUnconsumed, type);
+        } finally {
+            LayoutTrace.end(traced);
+        }
+    }
+
+    private void nestedScroll(int dxConsumed, int dyConsumed, int dxUnconsumed, int dyUnconsumed,
+                              int type) {
         // Dispatch up to the nested parent first
+        mParentOffsetInWindow[1] = 0;
         dispatchNestedScroll(dxConsumed, dyConsumed, dxUnconsumed, dyUnconsumed,
-                mParentOffsetInWindow);
+                mParentOffsetInWindow, type);
+        if (type != ViewCompat.TYPE_TOUCH) {
+            // A fling reaching the top of the list must not pull the header out
+            return;
+        }
 
         // This is a bit of a hack. Nested scrolling works from the bottom up, and as we are
         // sometimes between two nested scrolling views, we need a way to be able to know when any
@@ -807,9 +1948,42 @@ public class InheritedSwipeRefreshLayout extends ViewGroup implements NestedScro
                 dx, dy, consumed, offsetInWindow);
     }
 
+    // NestedScrollingChild2
+
+    @Override
+    public boolean startNestedScroll(int axes, int type) {
+        return mNestedScrollingChildHelper.startNestedScroll(axes, type);
+    }
+
+    @Override
+    public void stopNestedScroll(int type) {
+        mNestedScrollingChildHelper.stopNestedScroll(type);
+    }
+
+    @Override
+    public boolean hasNestedScrollingParent(int type) {
+        return mNestedScrollingChildHelper.hasNestedScrollingParent(type);
+    }
+
+    @Override
+    public boolean dispatchNestedScroll(int dxConsumed, int dyConsumed, int dxUnconsumed,
+                                        int dyUnconsumed, int[] offsetInWindow, int type) {
+        return mNestedScrollingChildHelper.dispatchNestedScroll(dxConsumed, dyConsumed,
+                dxUnconsumed, dyUnconsumed, offsetInWindow, type);
+    }
+
+    @Override
+    public boolean dispatchNestedPreScroll(int dx, int dy, int[] consumed, int[] offsetInWindow,
+                                           int type) {
+        return mNestedScrollingChildHelper.dispatchNestedPreScroll(
+                dx, dy, consumed, offsetInWindow, type);
+    }
+
     @Override
     public boolean onNestedPreFling(View target, float velocityX,
                                     float velocityY) {
+        // Scroll velocities are opposite to the finger, a pull flings the content upwards
+        mNestedFlingVelocityY = -velocityY;
         return dispatchNestedPreFling(velocityX, velocityY);
     }
 
@@ -829,27 +2003,36 @@ public class InheritedSwipeRefreshLayout extends ViewGroup implements NestedScro
         return mNestedScrollingChildHelper.dispatchNestedPreFling(velocityX, velocityY);
     }
 
-    private boolean isAnimationRunning(Animation animation) {
-        return animation != null && animation.hasStarted() && !animation.hasEnded();
+    private boolean isAnimationRunning(int type) {
+        return mHeaderAnimation.mType == type && mHeaderAnimation.hasStarted()
+                && !mHeaderAnimation.hasEnded();
+    }
+
+    @VisibleForTesting
+    void moveHeader(float overscrollTop) {
+        final boolean traced = LayoutTrace.begin(LayoutTrace.MOVE_HEADER);
+        try {
+            dragHeader(overscrollTop);
+        } finally {
+            LayoutTrace.end(traced);
+        }
     }
 
-    private void moveHeader(float overscrollTop) {
+    private void dragHeader(float overscrollTop) {
 //        mProgress.setArrowEnabled(true);
-        float originalDragPercent = overscrollTop / mTotalDragDistance;
-
-        float dragPercent = Math.min(1f, Math.abs(originalDragPercent));
-        float adjustedPercent = (float) Math.max(dragPercent - .4, 0) * 5 / 3;
-        float extraOS = Math.abs(overscrollTop) - mTotalDragDistance;
-        float slingshotDist = mUsingCustomStart ? mHeadViewOffsetEnd - mOriginalOffsetTop
-                : mHeadViewOffsetEnd;
-        float tensionSlingshotPercent = Math.max(0, Math.min(extraOS, slingshotDist * 2)
-                / slingshotDist);
-        float tensionPercent = (float) ((tensionSlingshotPercent / 4) - Math.pow(
-                (tensionSlingshotPercent / 4), 2)) * 2f;
-        float extraMove = (slingshotDist) * tensionPercent * 2;
-
-        int targetY = mOriginalOffsetTop + (int) ((slingshotDist * dragPercent) + extraMove);
+        if (mDragCurveDirty) {
+            float slingshotDist = mUsingCustomStart ? mHeadViewOffsetEnd - mOriginalOffsetTop
+                    : mHeadViewOffsetEnd;
+            mDragCurveTable.build(mDragCurve, mTotalDragDistance, slingshotDist);
+            mDragCurveDirty = false;
+        }
+        int targetY = mOriginalOffsetTop + (int) mDragCurveTable.getHeaderOffset(overscrollTop);
         // where 1.0f is a full circle
+        ensureHeaderView();
+        promoteLayers();
+        beginFramePhase(FRAME_PHASE_DRAG);
+        setHeaderUpToDate(false);
+        maybePrepareSpeculativeRefresh(overscrollTop);
         if (mHeaderView.getVisibility() != View.VISIBLE) {
             mHeaderView.setVisibility(View.VISIBLE);
         }
@@ -863,70 +2046,61 @@ public class InheritedSwipeRefreshLayout extends ViewGroup implements NestedScro
         }
 //        if (overscrollTop < mTotalDragDistance) {
 //            if ((int)(mHeaderView.getAlpha() * 255) > STARTING_PROGRESS_ALPHA
-//                    && !isAnimationRunning(mAlphaStartAnimation)) {
+//                    && !isAnimationRunning(ANIMATION_ALPHA)) {
 //                // Animate the alpha
 ////                startProgressAlphaStartAnimation();
 ////                startProgressAlphaMaxAnimation();
 //            }
 //        } else {
-//            if ((int)(mHeaderView.getAlpha() * 255) < MAX_ALPHA && !isAnimationRunning(mAlphaMaxAnimation)) {
+//            if ((int)(mHeaderView.getAlpha() * 255) < MAX_ALPHA && !isAnimationRunning(ANIMATION_ALPHA)) {
 //                // Animate the alpha
 ////                startProgressAlphaMaxAnimation();
 //            }
 //        }
-        float strokeStart = adjustedPercent * .8f;
-//        mProgress.setStartEndTrim(0f, Math.min(MAX_PROGRESS_ANGLE, strokeStart));
-//        mProgress.setArrowScale(Math.min(1f, adjustedPercent));
-
-        float rotation = (-0.25f + .4f * adjustedPercent + tensionPercent * 2) * .5f;
-//        mProgress.setProgressRotation(rotation);
+        mHeaderState = overscrollTop > mTotalDragDistance ? IHeaderView.STATE_ARMED
+                : IHeaderView.STATE_PULLING;
         setTargetOffsetTopAndBottom(targetY - mCurrentTargetOffsetTop);
     }
 
-    private void finishSpinner(float overscrollTop) {
-        if (overscrollTop > mTotalDragDistance) {
+    private void finishSpinner(float overscrollTop, float velocityY) {
+        final boolean flung = mFlingToRefreshVelocity > 0 && velocityY >= mFlingToRefreshVelocity
+                && overscrollTop >= mTotalDragDistance * MIN_FLING_DRAG_FRACTION;
+        if (overscrollTop > mTotalDragDistance || flung) {
             setRefreshing(true, true /* notify */);
         } else {
             // cancel refresh
-            mRefreshing = false;
-//            mProgress.setStartEndTrim(0f, 0f);
-            Animation.AnimationListener listener = null;
-            if (!mScale) {
-                listener = new Animation.AnimationListener() {
-
-                    @Override
-                    public void onAnimationStart(Animation animation) {
-                    }
-
-                    @Override
-                    public void onAnimationEnd(Animation animation) {
-                        if (!mScale) {
-                            startScaleDownAnimation(null);
-                        }
-                    }
-
-                    @Override
-                    public void onAnimationRepeat(Animation animation) {
-                    }
+            returnToStart();
+        }
+    }
 
-                };
-            }
-            animateOffsetToStartPosition(mCurrentTargetOffsetTop, listener);
+    /**
+     * Give up the pull and animate the header back to its start, where onHeaderSettled() ends
+     * the gesture.
+     */
+    private void returnToStart() {
+        mStateMachine.moveTo(RefreshStateMachine.STATE_RETURNING_TO_START);
+        abortSpeculativeRefresh();
+//            mProgress.setStartEndTrim(0f, 0f);
+        animateOffsetToStartPosition(mCurrentTargetOffsetTop, null);
 //            mProgress.setArrowEnabled(false);
-        }
     }
 
     @Override
     public boolean onTouchEvent(MotionEvent ev) {
+        final boolean traced = LayoutTrace.begin(LayoutTrace.TOUCH_EVENT);
+        try {
+            return handleTouchEvent(ev);
+        } finally {
+            LayoutTrace.end(traced);
+        }
+    }
+
+    private boolean handleTouchEvent(MotionEvent ev) {
         final int action = ev.getActionMasked();
         int pointerIndex = -1;
 
-        if (mReturningToStart && action == MotionEvent.ACTION_DOWN) {
-            mReturningToStart = false;
-        }
-
-        if (!isEnabled() || mReturningToStart || canChildScrollUp()
-                || mRefreshing || mNestedScrollInProgress) {
+        if (!isEnabled() || canChildScrollUp() || mStateMachine.isRefreshing()
+                || mStateMachine.isNestedScrollInProgress()) {
             // Fail fast if we're not in a state where a swipe is possible
             return false;
         }
@@ -934,7 +2108,8 @@ public class InheritedSwipeRefreshLayout extends ViewGroup implements NestedScro
         switch (action) {
             case MotionEvent.ACTION_DOWN:
                 mActivePointerId = ev.getPointerId(0);
-                mIsBeingDragged = false;
+                mStateMachine.moveFrom(RefreshStateMachine.STATE_DRAGGING,
+                        RefreshStateMachine.STATE_IDLE);
                 break;
 
             case MotionEvent.ACTION_MOVE: {
@@ -945,9 +2120,16 @@ public class InheritedSwipeRefreshLayout extends ViewGroup implements NestedScro
                 }
 
                 final float y = ev.getY(pointerIndex);
-                startDragging(y);
-
-                if (mIsBeingDragged) {
+                startDragging(ev, pointerIndex);
+
+                if (mStateMachine.isBeingDragged()) {
+                    // Batched samples only matter for where the pull went on the way, the header
+                    // is moved once per event to the latest one
+                    final int historySize = ev.getHistorySize();
+                    for (int h = 0; h < historySize; h++) {
+                        maybePrepareSpeculativeRefresh(
+                                (ev.getHistoricalY(pointerIndex, h) - mInitialMotionY) * DRAG_RATE);
+                    }
                     final float overscrollTop = (y - mInitialMotionY) * DRAG_RATE;
                     if (overscrollTop > 0) {
                         moveHeader(overscrollTop);
@@ -979,41 +2161,82 @@ public class InheritedSwipeRefreshLayout extends ViewGroup implements NestedScro
                     return false;
                 }
 
-                if (mIsBeingDragged) {
+                if (mStateMachine.isBeingDragged()) {
                     final float y = ev.getY(pointerIndex);
                     final float overscrollTop = (y - mInitialMotionY) * DRAG_RATE;
-                    mIsBeingDragged = false;
-                    finishSpinner(overscrollTop);
+                    // finishSpinner() moves on to refreshing or returning to start
+                    finishSpinner(overscrollTop, getReleaseVelocity());
                 }
                 mActivePointerId = INVALID_POINTER;
                 return false;
             }
             case MotionEvent.ACTION_CANCEL:
+                if (mStateMachine.isBeingDragged()) {
+                    // A cancelled drag never triggers, the header goes back as if released short
+                    returnToStart();
+                }
+                mActivePointerId = INVALID_POINTER;
                 return false;
         }
 
         return true;
     }
 
+    /**
+     * @return The downward velocity of the active pointer, in pixels per second.
+     */
+    private float getReleaseVelocity() {
+        if (mVelocityTracker == null) {
+            // Events were delivered without going through dispatchTouchEvent()
+            return 0;
+        }
+        mVelocityTracker.computeCurrentVelocity(1000, mMaximumFlingVelocity);
+        return mVelocityTracker.getYVelocity(mActivePointerId);
+    }
+
+    private void trackVelocity(MotionEvent ev) {
+        if (mVelocityTracker == null) {
+            mVelocityTracker = VelocityTracker.obtain();
+        } else if (ev.getActionMasked() == MotionEvent.ACTION_DOWN) {
+            mVelocityTracker.clear();
+        }
+        // Takes the historical samples of batched moves into account as well
+        mVelocityTracker.addMovement(ev);
+    }
+
+    /**
+     * Start dragging at the first sample of the move, historical or current, that crosses the
+     * touch slop, so that fast moves batched into a single event start from where the slop was
+     * actually crossed.
+     */
+    private void startDragging(MotionEvent ev, int pointerIndex) {
+        if (mStateMachine.isBeingDragged()) {
+            return;
+        }
+        final int historySize = ev.getHistorySize();
+        for (int h = 0; h < historySize && !mStateMachine.isBeingDragged(); h++) {
+            startDragging(ev.getHistoricalY(pointerIndex, h));
+        }
+        startDragging(ev.getY(pointerIndex));
+    }
+
     private void startDragging(float y) {
         final float yDiff = y - mInitialDownY;
-        if (yDiff > mTouchSlop && !mIsBeingDragged) {
+        if (yDiff > mTouchSlop && !mStateMachine.isBeingDragged()) {
             mInitialMotionY = mInitialDownY + mTouchSlop;
-            mIsBeingDragged = true;
+            mStateMachine.moveTo(RefreshStateMachine.STATE_DRAGGING);
 //            mHeaderView.setAlpha((float) (STARTING_PROGRESS_ALPHA / 255.0));
         }
     }
 
     private void animateOffsetToCorrectPosition(int from, Animation.AnimationListener listener) {
         mFrom = from;
-        mAnimateToCorrectPosition.reset();
-        mAnimateToCorrectPosition.setDuration(ANIMATE_TO_TRIGGER_DURATION);
-        mAnimateToCorrectPosition.setInterpolator(mDecelerateInterpolator);
         if (listener != null) {
             mHeaderView.setAnimationListener(listener);
         }
-        mHeaderView.clearAnimation();
-        mHeaderView.startAnimation(mAnimateToCorrectPosition);
+        startHeaderAnimation(ANIMATION_TO_CORRECT_POSITION, ANIMATE_TO_TRIGGER_DURATION,
+                mDecelerateInterpolator);
+        beginFramePhase(FRAME_PHASE_ANIMATE_TO_TRIGGER);
     }
 
     private void animateOffsetToStartPosition(int from, Animation.AnimationListener listener) {
@@ -1022,74 +2245,258 @@ public class InheritedSwipeRefreshLayout extends ViewGroup implements NestedScro
             startScaleDownReturnToStartAnimation(from, listener);
         } else {
             mFrom = from;
-            mAnimateToStartPosition.reset();
-            mAnimateToStartPosition.setDuration(ANIMATE_TO_START_DURATION);
-            mAnimateToStartPosition.setInterpolator(mDecelerateInterpolator);
             if (listener != null) {
                 mHeaderView.setAnimationListener(listener);
             }
-            mHeaderView.clearAnimation();
-            mHeaderView.startAnimation(mAnimateToStartPosition);
+            startHeaderAnimation(ANIMATION_TO_START_POSITION, ANIMATE_TO_START_DURATION,
+                    mDecelerateInterpolator);
         }
+        beginFramePhase(FRAME_PHASE_RETURN_TO_START);
     }
 
-    private final Animation mAnimateToCorrectPosition = new Animation() {
-        @Override
-        public void applyTransformation(float interpolatedTime, Transformation t) {
-            int targetTop = 0;
-            int endTarget = 0;
-            if (!mUsingCustomStart) {
-                endTarget = mHeadViewOffsetEnd - Math.abs(mOriginalOffsetTop);
-            } else {
-                endTarget = mHeadViewOffsetEnd;
-            }
-            targetTop = (mFrom + (int) ((endTarget - mFrom) * interpolatedTime));
-            int offset = targetTop - mHeaderView.getTop();
-            setTargetOffsetTopAndBottom(offset);
-//            mProgress.setArrowScale(1 - interpolatedTime);
+    void moveToCorrectPosition(float interpolatedTime) {
+        int targetTop = 0;
+        int endTarget = 0;
+        if (!mUsingCustomStart) {
+            endTarget = mHeadViewOffsetEnd - Math.abs(mOriginalOffsetTop);
+        } else {
+            endTarget = mHeadViewOffsetEnd;
         }
-    };
+        targetTop = (mFrom + (int) ((endTarget - mFrom) * interpolatedTime));
+        int offset = targetTop - mCurrentTargetOffsetTop;
+        setTargetOffsetTopAndBottom(offset);
+//        mProgress.setArrowScale(1 - interpolatedTime);
+    }
 
     void moveToStart(float interpolatedTime) {
         int targetTop = 0;
         targetTop = (mFrom + (int) ((mOriginalOffsetTop - mFrom) * interpolatedTime));
-        int offset = targetTop - mHeaderView.getTop();
+        int offset = targetTop - mCurrentTargetOffsetTop;
         setTargetOffsetTopAndBottom(offset);
     }
 
-    private final Animation mAnimateToStartPosition = new Animation() {
-        @Override
-        public void applyTransformation(float interpolatedTime, Transformation t) {
-            moveToStart(interpolatedTime);
-        }
-    };
-
     private void startScaleDownReturnToStartAnimation(int from,
                                                       Animation.AnimationListener listener) {
         mFrom = from;
         mStartingScale = mHeaderView.getScaleX();
-        mScaleDownToStartAnimation = new Animation() {
-            @Override
-            public void applyTransformation(float interpolatedTime, Transformation t) {
-                float targetScale = (mStartingScale + (-mStartingScale  * interpolatedTime));
-                setAnimationProgress(targetScale);
-                moveToStart(interpolatedTime);
-            }
-        };
-        mScaleDownToStartAnimation.setDuration(SCALE_DOWN_DURATION);
         if (listener != null) {
             mHeaderView.setAnimationListener(listener);
         }
-        mHeaderView.clearAnimation();
-        mHeaderView.startAnimation(mScaleDownToStartAnimation);
+        startHeaderAnimation(ANIMATION_SCALE_DOWN_TO_START, SCALE_DOWN_DURATION,
+                mAccelerateDecelerateInterpolator);
+    }
+
+    /**
+     * Runs every header transition. Animations are time based, so the header lands on the
+     * same trajectory whatever the display refresh rate is.
+     */
+    private class HeaderAnimation extends Animation {
+        int mType;
+
+        @Override
+        public void applyTransformation(float interpolatedTime, Transformation t) {
+            final boolean traced = LayoutTrace.begin(LayoutTrace.ANIMATIONS[mType]);
+            try {
+                applyTransition(interpolatedTime);
+            } finally {
+                LayoutTrace.end(traced);
+            }
+        }
+
+        private void applyTransition(float interpolatedTime) {
+            switch (mType) {
+                case ANIMATION_SCALE_UP:
+                    setAnimationProgress(interpolatedTime);
+                    break;
+                case ANIMATION_SCALE_DOWN:
+                    setAnimationProgress(1 - interpolatedTime);
+                    break;
+                case ANIMATION_ALPHA:
+                    mHeaderView.setAlpha(
+                            (float) ((mStartingAlpha + ((mEndingAlpha - mStartingAlpha) * interpolatedTime)) / 255.0));
+                    break;
+                case ANIMATION_TO_CORRECT_POSITION:
+                    moveToCorrectPosition(interpolatedTime);
+                    break;
+                case ANIMATION_TO_START_POSITION:
+                    moveToStart(interpolatedTime);
+                    break;
+                case ANIMATION_SCALE_DOWN_TO_START:
+                    float targetScale = (mStartingScale + (-mStartingScale  * interpolatedTime));
+                    setAnimationProgress(targetScale);
+                    moveToStart(interpolatedTime);
+                    break;
+            }
+        }
     }
 
     void setTargetOffsetTopAndBottom(int offset) {
 //        mHeaderView.bringToFront();
-        ViewCompat.offsetTopAndBottom(mHeaderView, offset);
+        mCurrentTargetOffsetTop += offset;
+        if (offset != 0 && mFrameMonitor != null) {
+            mFrameMonitor.onHeaderMoved();
+        }
+        if (mTranslationOffsetEnabled) {
+            final float translation = mCurrentTargetOffsetTop - mCommittedOffsetTop;
+            if (mHeaderView != null)
+                mHeaderView.setTranslationY(translation);
+            if (mTarget != null)
+                mTarget.setTranslationY(translation);
+            dispatchHeaderProgress();
+            return;
+        }
+        if (mHeaderView != null)
+            ViewCompat.offsetTopAndBottom(mHeaderView, offset);
         if(mTarget != null)
             ViewCompat.offsetTopAndBottom(mTarget, offset);
-        mCurrentTargetOffsetTop = mHeaderView.getTop();
+        mCommittedOffsetTop = mCurrentTargetOffsetTop;
+        dispatchHeaderProgress();
+    }
+
+    private void setHeaderState(int state) {
+        mHeaderState = state;
+        dispatchHeaderProgress();
+    }
+
+    /**
+     * Tell the header where it is and what it is doing, if that changed since the last call.
+     */
+    private void dispatchHeaderProgress() {
+        if (mHeaderView == null) {
+            return;
+        }
+        final int refreshingOffsetTop = mUsingCustomStart ? mHeadViewOffsetEnd
+                : mHeadViewOffsetEnd - Math.abs(mOriginalOffsetTop);
+        final int range = refreshingOffsetTop - mOriginalOffsetTop;
+        final float pullFraction = range > 0
+                ? (float) (mCurrentTargetOffsetTop - mOriginalOffsetTop) / range : 0f;
+        if (pullFraction == mDispatchedPullFraction && mHeaderState == mDispatchedHeaderState) {
+            return;
+        }
+        mDispatchedPullFraction = pullFraction;
+        mDispatchedHeaderState = mHeaderState;
+        mHeaderView.onHeaderProgress(pullFraction, mHeaderState);
+    }
+
+    /**
+     * In translation offset mode, move the displacement accumulated as translationY into the
+     * layout bounds of the header and the target.
+     */
+    private void commitOffsetTranslation() {
+        if (!mTranslationOffsetEnabled) {
+            return;
+        }
+        final int offset = mCurrentTargetOffsetTop - mCommittedOffsetTop;
+        if (mHeaderView != null) {
+            mHeaderView.setTranslationY(0);
+            ViewCompat.offsetTopAndBottom(mHeaderView, offset);
+        }
+        if (mTarget != null) {
+            mTarget.setTranslationY(0);
+            ViewCompat.offsetTopAndBottom(mTarget, offset);
+        }
+        mCommittedOffsetTop = mCurrentTargetOffsetTop;
+    }
+
+    /**
+     * Set a listener to be told how smoothly each phase of the pull ran: the drag, the
+     * animation to the refreshing position and the animation back to the start position.
+     * Frames are only monitored while a listener is set, and only those in which the header
+     * moved are counted. Requires API 16, does nothing on older versions.
+     *
+     * @param listener The listener to report to, or null to stop monitoring.
+     */
+    public void setOnFrameStatsListener(@Nullable OnFrameStatsListener listener) {
+        if (mFrameMonitor != null) {
+            mFrameMonitor.endPhase();
+            mFrameMonitor = null;
+        }
+        if (listener != null && android.os.Build.VERSION.SDK_INT >= 16) {
+            mFrameMonitor = new FrameMonitor(getContext(), listener);
+        }
+    }
+
+    private void beginFramePhase(int phase) {
+        if (mFrameMonitor != null) {
+            mFrameMonitor.beginPhase(phase);
+        }
+    }
+
+    /**
+     * Set whether the header, and optionally the target, are rendered into hardware layers while
+     * they are dragged or animated. The views go back to their previous layer type as soon as the
+     * header comes to rest, so the layers only live for the duration of a gesture and its settle
+     * animation. This avoids redrawing the header subtree on every frame of the movement, which
+     * helps headers with expensive content such as gradients and shadows.
+     *
+     * @param promotion One of {@link #LAYER_PROMOTION_NONE}, {@link #LAYER_PROMOTION_HEADER} or
+     *                  {@link #LAYER_PROMOTION_HEADER_AND_TARGET}.
+     */
+    public void setLayerPromotion(int promotion) {
+        if (promotion != LAYER_PROMOTION_NONE && promotion != LAYER_PROMOTION_HEADER
+                && promotion != LAYER_PROMOTION_HEADER_AND_TARGET) {
+            return;
+        }
+        demoteLayers();
+        mLayerPromotion = promotion;
+    }
+
+    /**
+     * @return The hardware layer promotion mode used while the header moves.
+     */
+    public int getLayerPromotion() {
+        return mLayerPromotion;
+    }
+
+    private void promoteLayers() {
+        if (mLayersPromoted || mLayerPromotion == LAYER_PROMOTION_NONE || mHeaderView == null) {
+            return;
+        }
+        mHeaderSavedLayerType = mHeaderView.getLayerType();
+        mHeaderView.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+        if (mLayerPromotion == LAYER_PROMOTION_HEADER_AND_TARGET && mTarget != null) {
+            mPromotedTarget = mTarget;
+            mTargetSavedLayerType = mTarget.getLayerType();
+            mTarget.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+        }
+        mLayersPromoted = true;
+    }
+
+    private void demoteLayers() {
+        if (!mLayersPromoted) {
+            return;
+        }
+        if (mHeaderView != null) {
+            mHeaderView.setLayerType(mHeaderSavedLayerType, null);
+        }
+        if (mPromotedTarget != null) {
+            mPromotedTarget.setLayerType(mTargetSavedLayerType, null);
+            mPromotedTarget = null;
+        }
+        mLayersPromoted = false;
+    }
+
+    /**
+     * Set whether the header and the target are moved with translationY while they are being
+     * dragged or animated. In this mode only render properties change on every frame, and the
+     * layout bounds are updated once when the header comes to rest, so children never see their
+     * bounds change in the middle of a gesture.
+     *
+     * @param enabled Whether to use translation offsets. Defaults to false.
+     */
+    public void setTranslationOffsetEnabled(boolean enabled) {
+        if (!enabled) {
+            commitOffsetTranslation();
+        }
+        mTranslationOffsetEnabled = enabled;
+    }
+
+    /**
+     * @return Whether the header and the target are moved with translationY while they are
+     *         being dragged or animated.
+     */
+    public boolean isTranslationOffsetEnabled() {
+        return mTranslationOffsetEnabled;
     }
 
     private void onSecondaryPointerUp(MotionEvent ev) {
@@ -1103,6 +2510,28 @@ public class InheritedSwipeRefreshLayout extends ViewGroup implements NestedScro
         }
     }
 
+    /**
+     * Instantiates the header class named by the isrl_headerView attribute.
+     */
+    private static class ClassNameHeaderViewFactory implements HeaderViewFactory {
+        private final String mClassName;
+
+        ClassNameHeaderViewFactory(Context context, String name) {
+            mClassName = name.startsWith(".") ? context.getPackageName() + name : name;
+        }
+
+        @Override
+        public HeaderViewBase createHeaderView(Context context) {
+            try {
+                final Class<? extends HeaderViewBase> clazz = Class.forName(mClassName, false,
+                        context.getClassLoader()).asSubclass(HeaderViewBase.class);
+                return clazz.getConstructor(Context.class).newInstance(context);
+            } catch (Exception e) {
+                throw new RuntimeException("Could not inflate header view subclass " + mClassName, e);
+            }
+        }
+    }
+
     /**
      * Classes that wish to be notified when the swipe gesture correctly
      * triggers a refresh should implement this interface.
@@ -1114,6 +2543,66 @@ public class InheritedSwipeRefreshLayout extends ViewGroup implements NestedScro
         void onRefresh();
     }
 
+    /**
+     * Classes that wish to be notified when the target needs more content should implement
+     * this interface.
+     */
+    public interface OnLoadMoreListener {
+        /**
+         * Called when the target reached its end or the prefetch threshold. Call
+         * {@link #setLoadingMore(boolean)} with false once the content is loaded.
+         */
+        void onLoadMore();
+    }
+
+    /**
+     * Classes that wish to start refreshing before the user releases the pull should
+     * implement this interface.
+     */
+    public interface OnSpeculativeRefreshListener {
+        /**
+         * Called once per pull when it crosses the speculative threshold. Unless
+         * {@link #onAbortRefresh()} follows, the refresh listeners are notified next.
+         */
+        void onPrepareRefresh();
+
+        /**
+         * Called when the pull that prepared a refresh ended without triggering it.
+         */
+        void onAbortRefresh();
+    }
+
+    /**
+     * Classes that wish to run a refresh asynchronously and let the layout track its completion
+     * should implement this interface.
+     */
+    public interface OnAsyncRefreshListener {
+        /**
+         * Called when a refresh is triggered. Call {@link RefreshRequest#finish()} once the
+         * refresh is done.
+         *
+         * @param request The handle of the new refresh.
+         */
+        void onRefresh(@NonNull RefreshRequest request);
+    }
+
+    /**
+     * Classes that wish to track the frame timing of the pull gesture and its animations should
+     * implement this interface.
+     */
+    public interface OnFrameStatsListener {
+        /**
+         * Called when a phase of the pull gesture ends.
+         *
+         * @param phase One of {@link #FRAME_PHASE_DRAG}, {@link #FRAME_PHASE_ANIMATE_TO_TRIGGER}
+         *              or {@link #FRAME_PHASE_RETURN_TO_START}.
+         * @param frameCount Number of frames during the phase in which the header moved.
+         * @param slowFrameCount Number of those frames that missed their deadline.
+         * @param worstFrameNanos Duration of the longest frame, in nanoseconds.
+         */
+        void onFrameStats(int phase, int frameCount, int slowFrameCount, long worstFrameNanos);
+    }
+
     /**
      * Classes that wish to override {@link InheritedSwipeRefreshLayout#canChildScrollUp()} method
      * behavior should implement this interface.
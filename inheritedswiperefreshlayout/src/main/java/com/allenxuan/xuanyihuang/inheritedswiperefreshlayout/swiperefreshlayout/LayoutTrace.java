@@ -0,0 +1,58 @@
+package com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout;
+
+import android.support.v4.os.TraceCompat;
+
+/**
+ * Named systrace sections around the measure, layout, gesture and animation paths of
+ * InheritedSwipeRefreshLayout, so that a trace attributes the time spent during a pull to the
+ * layout. Off by default: a disabled section costs a static field read. Section names are
+ * constants, nothing is allocated either way.
+ */
+
+final class LayoutTrace {
+    static final String MEASURE = "ISRL#onMeasure";
+    static final String LAYOUT = "ISRL#onLayout";
+    static final String INTERCEPT_TOUCH_EVENT = "ISRL#onInterceptTouchEvent";
+    static final String TOUCH_EVENT = "ISRL#onTouchEvent";
+    static final String MOVE_HEADER = "ISRL#moveHeader";
+    static final String NESTED_PRE_SCROLL = "ISRL#onNestedPreScroll";
+    static final String NESTED_SCROLL = "ISRL#onNestedScroll";
+    // Indexed by the animation types of the layout
+    static final String[] ANIMATIONS = {
+            "ISRL#animateScaleUp",
+            "ISRL#animateScaleDown",
+            "ISRL#animateAlpha",
+            "ISRL#animateToCorrectPosition",
+            "ISRL#animateToStartPosition",
+            "ISRL#animateScaleDownToStart"
+    };
+
+    private static boolean sEnabled;
+
+    private LayoutTrace() {
+    }
+
+    static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    /**
+     * Begin a section if tracing is enabled.
+     *
+     * @return Whether a section was begun, to pass to {@link #end(boolean)}. Sections must be
+     *         ended even if tracing gets disabled in between, and only if they were begun.
+     */
+    static boolean begin(String name) {
+        if (!sEnabled) {
+            return false;
+        }
+        TraceCompat.beginSection(name);
+        return true;
+    }
+
+    static void end(boolean begun) {
+        if (begun) {
+            TraceCompat.endSection();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout;
+
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.v4.os.CancellationSignal;
+
+/**
+ * Handle of one refresh started by InheritedSwipeRefreshLayout. The layout keeps at most one
+ * request in flight: triggers that arrive while a request is pending are folded into it. Call
+ * {@link #finish()} when the refresh is done to hide the header. The request is cancelled when
+ * it times out, or when the layout is disabled or detached from its window; watch
+ * {@link #getCancellationSignal()} to stop the work it started.
+ */
+
+public final class RefreshRequest {
+    private final InheritedSwipeRefreshLayout mLayout;
+    private final CancellationSignal mCancellationSignal = new CancellationSignal();
+    private boolean mFinished;
+
+    RefreshRequest(InheritedSwipeRefreshLayout layout) {
+        mLayout = layout;
+    }
+
+    /**
+     * Tell the layout that the refresh is done. Can be called from any thread. Does nothing if
+     * the request already finished or was cancelled.
+     */
+    public void finish() {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            mLayout.onRefreshRequestFinished(this);
+        } else {
+            mLayout.post(new Runnable() {
+                @Override
+                public void run() {
+                    mLayout.onRefreshRequestFinished(RefreshRequest.this);
+                }
+            });
+        }
+    }
+
+    /**
+     * @return Whether the request finished, either through {@link #finish()} or because the
+     *         layout stopped refreshing.
+     */
+    public boolean isFinished() {
+        return mFinished;
+    }
+
+    /**
+     * @return Whether the layout gave up on the request.
+     */
+    public boolean isCancelled() {
+        return mCancellationSignal.isCanceled();
+    }
+
+    /**
+     * @return Signal cancelled when the layout gives up on the request.
+     */
+    @NonNull
+    public CancellationSignal getCancellationSignal() {
+        return mCancellationSignal;
+    }
+
+    void markFinished() {
+        mFinished = true;
+    }
+
+    void cancel() {
+        mFinished = true;
+        mCancellationSignal.cancel();
+    }
+}
@@ -0,0 +1,145 @@
+package com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout;
+
+import android.graphics.Rect;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+
+/**
+ * Caps how many InheritedSwipeRefreshLayouts notify their refresh listeners at the same time,
+ * e.g. when a screen with many tabs refreshes them all at once and their loads would compete for
+ * the network and the CPU. A layout opts in with
+ * {@link InheritedSwipeRefreshLayout#setRefreshScheduler(RefreshScheduler)}. A refresh triggered
+ * while the cap is reached is queued: its header rests at the refreshing position in the
+ * {@link com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout.header.IHeaderView#STATE_PENDING}
+ * state, and its listeners are notified once a running refresh completes or is cancelled.
+ * Queued layouts that are visible on screen start first, then in the order they were queued.
+ *
+ * <p>The scheduler must only be used from the UI thread. It only references layouts while they
+ * are queued or refreshing, a layout leaves it when it is detached.</p>
+ */
+
+public final class RefreshScheduler {
+    private static final int DEFAULT_MAX_CONCURRENT_REFRESHES = 2;
+
+    private static RefreshScheduler sInstance;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final ArrayList<InheritedSwipeRefreshLayout> mRunning = new ArrayList<>();
+    private final ArrayList<InheritedSwipeRefreshLayout> mPending = new ArrayList<>();
+    private final Rect mTmpRect = new Rect();
+    private int mMaxConcurrentRefreshes;
+    private boolean mDispatchPosted;
+
+    /**
+     * @return The process wide scheduler, which runs at most two refreshes at a time unless
+     *         changed with {@link #setMaxConcurrentRefreshes(int)}.
+     */
+    @NonNull
+    public static RefreshScheduler getInstance() {
+        if (sInstance == null) {
+            sInstance = new RefreshScheduler(DEFAULT_MAX_CONCURRENT_REFRESHES);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Create a scheduler of its own, e.g. to cap the layouts of one screen independently of the
+     * rest of the process.
+     *
+     * @param maxConcurrentRefreshes How many refreshes may run at the same time.
+     */
+    public RefreshScheduler(int maxConcurrentRefreshes) {
+        setMaxConcurrentRefreshes(maxConcurrentRefreshes);
+    }
+
+    /**
+     * Set how many refreshes may run at the same time. Raising the cap starts queued refreshes
+     * right away, lowering it lets running refreshes finish.
+     *
+     * @param maxConcurrentRefreshes At least 1.
+     */
+    public void setMaxConcurrentRefreshes(int maxConcurrentRefreshes) {
+        if (maxConcurrentRefreshes < 1) {
+            throw new IllegalArgumentException("maxConcurrentRefreshes must be at least 1, was "
+                    + maxConcurrentRefreshes);
+        }
+        mMaxConcurrentRefreshes = maxConcurrentRefreshes;
+        dispatchPending();
+    }
+
+    public int getMaxConcurrentRefreshes() {
+        return mMaxConcurrentRefreshes;
+    }
+
+    /**
+     * @return How many layouts are refreshing through this scheduler.
+     */
+    public int getRunningCount() {
+        return mRunning.size();
+    }
+
+    /**
+     * @return How many layouts wait for a refresh slot.
+     */
+    public int getPendingCount() {
+        return mPending.size();
+    }
+
+    /**
+     * Queue a refresh for the layout. Starts it before returning if a slot is free.
+     */
+    void enqueue(@NonNull InheritedSwipeRefreshLayout layout) {
+        if (mRunning.contains(layout) || mPending.contains(layout)) {
+            return;
+        }
+        mPending.add(layout);
+        dispatchPending();
+    }
+
+    /**
+     * Forget the layout, whether it is queued or refreshing, and give its slot to the next
+     * queued layout.
+     */
+    void remove(@NonNull InheritedSwipeRefreshLayout layout) {
+        mPending.remove(layout);
+        if (mRunning.remove(layout) && !mPending.isEmpty() && !mDispatchPosted) {
+            // The layout is in the middle of completing its own refresh, start the next one
+            // once it is done rather than from within its call
+            mDispatchPosted = true;
+            mHandler.post(mDispatchRunnable);
+        }
+    }
+
+    private final Runnable mDispatchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mDispatchPosted = false;
+            dispatchPending();
+        }
+    };
+
+    private void dispatchPending() {
+        while (mRunning.size() < mMaxConcurrentRefreshes && !mPending.isEmpty()) {
+            final InheritedSwipeRefreshLayout layout = mPending.remove(nextPendingIndex());
+            mRunning.add(layout);
+            layout.startScheduledRefresh();
+        }
+    }
+
+    /**
+     * @return The index of the first visible queued layout, or of the oldest one if none is.
+     */
+    private int nextPendingIndex() {
+        final int size = mPending.size();
+        for (int i = 0; i < size; i++) {
+            final InheritedSwipeRefreshLayout layout = mPending.get(i);
+            if (layout.isShown() && layout.getGlobalVisibleRect(mTmpRect)) {
+                return i;
+            }
+        }
+        return 0;
+    }
+}
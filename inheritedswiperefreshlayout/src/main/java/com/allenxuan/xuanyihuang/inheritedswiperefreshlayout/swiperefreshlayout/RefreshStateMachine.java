@@ -0,0 +1,125 @@
+package com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout;
+
+import android.os.SystemClock;
+
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * State of the gesture and refresh cycle of an InheritedSwipeRefreshLayout. Every transition is
+ * recorded with its time into a fixed-size ring buffer, so that the recent history can be dumped
+ * into a bug report without logging on the hot path. Transitions happen on the UI thread only;
+ * the history can be dumped from any thread without locking. Recording never allocates.
+ */
+
+final class RefreshStateMachine {
+    /** Nothing is going on, the header is at its start position. */
+    static final int STATE_IDLE = 0;
+    /** The user drags the header with a touch gesture handled by the layout. */
+    static final int STATE_DRAGGING = 1;
+    /** The user scrolls a nested scrolling child, which may pull the header. */
+    static final int STATE_NESTED_SCROLLING = 2;
+    /** The header returns to its start position, after a cancelled pull or a refresh. */
+    static final int STATE_RETURNING_TO_START = 3;
+    /** A refresh was triggered, the listeners are notified once the header is in place. */
+    static final int STATE_TRIGGERED = 4;
+    /** The header shows a refresh that the listeners were notified of, or that was set. */
+    static final int STATE_REFRESHING = 5;
+
+    static final int HISTORY_SIZE = 64;
+
+    // Each entry packs the time in milliseconds in the upper bits, then the from and to states
+    private static final int STATE_BITS = 8;
+    private static final long STATE_MASK = (1 << STATE_BITS) - 1;
+
+    private final AtomicLongArray mHistory = new AtomicLongArray(HISTORY_SIZE);
+    // Number of transitions recorded so far, the next entry goes at mTransitionCount % HISTORY_SIZE
+    private volatile int mTransitionCount;
+    private int mState = STATE_IDLE;
+
+    int getState() {
+        return mState;
+    }
+
+    boolean isRefreshing() {
+        return mState == STATE_TRIGGERED || mState == STATE_REFRESHING;
+    }
+
+    boolean isBeingDragged() {
+        return mState == STATE_DRAGGING;
+    }
+
+    boolean isNestedScrollInProgress() {
+        return mState == STATE_NESTED_SCROLLING;
+    }
+
+    /**
+     * Move to the given state, recording the transition if the state changes.
+     */
+    void moveTo(int state) {
+        final int from = mState;
+        if (from == state) {
+            return;
+        }
+        mState = state;
+        final int count = mTransitionCount;
+        mHistory.lazySet(count % HISTORY_SIZE, (SystemClock.uptimeMillis() << (2 * STATE_BITS))
+                | (from << STATE_BITS) | state);
+        mTransitionCount = count + 1;
+    }
+
+    /**
+     * Move to the given state only if the machine is currently in the expected one.
+     */
+    void moveFrom(int expected, int state) {
+        if (mState == expected) {
+            moveTo(state);
+        }
+    }
+
+    /**
+     * Print the current state and the recorded transitions, oldest first, with their times in
+     * {@link SystemClock#uptimeMillis()}.
+     */
+    void dump(String prefix, PrintWriter writer) {
+        final int count = mTransitionCount;
+        writer.print(prefix);
+        writer.print("state=");
+        writer.print(stateToString(mState));
+        writer.print(" transitions=");
+        writer.println(count);
+        final long now = SystemClock.uptimeMillis();
+        for (int i = Math.max(0, count - HISTORY_SIZE); i < count; i++) {
+            final long entry = mHistory.get(i % HISTORY_SIZE);
+            final long time = entry >>> (2 * STATE_BITS);
+            writer.print(prefix);
+            writer.print("  ");
+            writer.print(time);
+            writer.print(" (-");
+            writer.print(now - time);
+            writer.print("ms) ");
+            writer.print(stateToString((int) ((entry >>> STATE_BITS) & STATE_MASK)));
+            writer.print(" -> ");
+            writer.println(stateToString((int) (entry & STATE_MASK)));
+        }
+    }
+
+    static String stateToString(int state) {
+        switch (state) {
+            case STATE_IDLE:
+                return "IDLE";
+            case STATE_DRAGGING:
+                return "DRAGGING";
+            case STATE_NESTED_SCROLLING:
+                return "NESTED_SCROLLING";
+            case STATE_RETURNING_TO_START:
+                return "RETURNING_TO_START";
+            case STATE_TRIGGERED:
+                return "TRIGGERED";
+            case STATE_REFRESHING:
+                return "REFRESHING";
+            default:
+                return Integer.toString(state);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout;
+
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+
+/**
+ * Hears the scrolls of the target of InheritedSwipeRefreshLayout from the target itself, as they
+ * happen, so that a cached canChildScrollUp() answer never outlives a scroll. View tree scroll
+ * notifications only arrive at the next traversal, too late for the touch events in between.
+ *
+ * <p>Only RecyclerView is watched, as it takes any number of scroll listeners. Lists and scroll
+ * views have a single scroll listener slot, which belongs to the app. RecyclerView is only
+ * referenced once it is known to be on the class path.</p>
+ */
+
+abstract class TargetScrollWatcher {
+    private static final boolean RECYCLER_VIEW_AVAILABLE =
+            isClassAvailable("android.support.v7.widget.RecyclerView");
+
+    interface OnTargetScrollListener {
+        void onTargetScrolled();
+    }
+
+    final View mTarget;
+    final OnTargetScrollListener mListener;
+
+    private TargetScrollWatcher(View target, OnTargetScrollListener listener) {
+        mTarget = target;
+        mListener = listener;
+    }
+
+    /**
+     * Start watching the target.
+     *
+     * @return The watcher, or null if the target is not a RecyclerView.
+     */
+    static TargetScrollWatcher watch(View target, OnTargetScrollListener listener) {
+        if (!RECYCLER_VIEW_AVAILABLE || !RecyclerViewWatcher.accepts(target)) {
+            return null;
+        }
+        final TargetScrollWatcher watcher = new RecyclerViewWatcher(target, listener);
+        watcher.onWatch();
+        return watcher;
+    }
+
+    abstract void onWatch();
+
+    /**
+     * Stop watching the target, leaving the scroll listeners of the app in place.
+     */
+    abstract void unwatch();
+
+    private static boolean isClassAvailable(String className) {
+        try {
+            Class.forName(className, false, TargetScrollWatcher.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static final class RecyclerViewWatcher extends TargetScrollWatcher {
+        private final RecyclerView.OnScrollListener mScrollListener =
+                new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                mListener.onTargetScrolled();
+            }
+        };
+
+        RecyclerViewWatcher(View target, OnTargetScrollListener listener) {
+            super(target, listener);
+        }
+
+        static boolean accepts(View target) {
+            return target instanceof RecyclerView;
+        }
+
+        @Override
+        void onWatch() {
+            ((RecyclerView) mTarget).addOnScrollListener(mScrollListener);
+        }
+
+        @Override
+        void unwatch() {
+            ((RecyclerView) mTarget).removeOnScrollListener(mScrollListener);
+        }
+    }
+}
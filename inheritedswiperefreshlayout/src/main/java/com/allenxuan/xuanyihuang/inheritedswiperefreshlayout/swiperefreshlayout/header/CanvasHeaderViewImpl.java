@@ -0,0 +1,108 @@
+package com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout.header;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.content.ContextCompat;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+
+import com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.R;
+
+/**
+ * Header that looks like {@link SimpleHeaderViewImpl} but draws its background and label itself,
+ * without any child view: it adds a single node to the view tree and nothing to measure or lay
+ * out. Select it from XML with
+ * {@code app:isrl_headerView="com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout.header.CanvasHeaderViewImpl"}.
+ */
+
+public class CanvasHeaderViewImpl extends HeaderViewBase {
+    private static final int TEXT_SIZE_SP = 14;
+
+    private final Paint mTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final int mBackgroundColor;
+    private final String mDefaultLabel;
+    private final String mUpToDateLabel;
+    private final String mPendingLabel;
+    private boolean mUpToDate;
+    private boolean mPending;
+
+    // The label being drawn, measured once whenever it changes
+    private String mLabel;
+    private float mLabelWidth;
+    // Offset of the baseline from the vertical center, fixed for a given paint
+    private final float mBaselineOffset;
+
+    public CanvasHeaderViewImpl(@NonNull Context context) {
+        this(context, null);
+    }
+
+    public CanvasHeaderViewImpl(@NonNull Context context, @Nullable AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public CanvasHeaderViewImpl(@NonNull Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        setWillNotDraw(false);
+        mBackgroundColor = ContextCompat.getColor(context, android.R.color.holo_blue_bright);
+        mDefaultLabel = context.getString(R.string.isrl_header_default);
+        mUpToDateLabel = context.getString(R.string.isrl_header_up_to_date);
+        mPendingLabel = context.getString(R.string.isrl_header_pending);
+
+        mTextPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, TEXT_SIZE_SP,
+                context.getResources().getDisplayMetrics()));
+        final TypedArray a = context.obtainStyledAttributes(
+                new int[] {android.R.attr.textColorPrimary});
+        final ColorStateList textColor = a.getColorStateList(0);
+        a.recycle();
+        mTextPaint.setColor(textColor != null ? textColor.getDefaultColor() : Color.BLACK);
+        final Paint.FontMetrics fontMetrics = mTextPaint.getFontMetrics();
+        mBaselineOffset = -(fontMetrics.ascent + fontMetrics.descent) / 2f;
+        setLabel(mDefaultLabel);
+    }
+
+    @Override
+    public void inflateLayout(Context context) {
+        // Everything is drawn in onDraw(), there is nothing to inflate
+    }
+
+    @Override
+    public void onUpToDateChanged(boolean upToDate) {
+        mUpToDate = upToDate;
+        updateLabel();
+    }
+
+    @Override
+    public void onHeaderProgress(float pullFraction, int state) {
+        final boolean pending = state == STATE_PENDING;
+        if (pending != mPending) {
+            mPending = pending;
+            updateLabel();
+        }
+    }
+
+    private void updateLabel() {
+        setLabel(mUpToDate ? mUpToDateLabel : mPending ? mPendingLabel : mDefaultLabel);
+    }
+
+    private void setLabel(String label) {
+        if (label.equals(mLabel)) {
+            return;
+        }
+        mLabel = label;
+        mLabelWidth = mTextPaint.measureText(label);
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        canvas.drawColor(mBackgroundColor);
+        canvas.drawText(mLabel, (getWidth() - mLabelWidth) / 2f,
+                getHeight() / 2f + mBaselineOffset, mTextPaint);
+    }
+}
@@ -0,0 +1,344 @@
+package com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout.header;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.LruCache;
+import android.support.v4.view.ViewCompat;
+import android.util.AttributeSet;
+
+/**
+ * Base class for headers whose animation is too expensive to draw live on every frame. The
+ * animation is split into a fixed number of frames, each rendered once by
+ * {@link #renderFrame(Canvas, int, int, float)} into a bitmap kept in a memory bounded LRU cache.
+ * The pull picks the frame matching its progress and the refresh loops through all of them, so
+ * that playback only draws cached bitmaps. Frames are rendered ahead of time, one per message
+ * loop, as soon as the header has a size; until a frame is ready the nearest cached one is drawn
+ * in its place.
+ *
+ * <p>By default the cache holds every frame at the size of the header, up to an eighth of the
+ * heap. When the budget cannot hold them all the animation is split into as many frames as fit,
+ * so that playback never evicts a frame it is about to draw.</p>
+ *
+ * <p>The cache is emptied when the header is detached from its window or the system asks to
+ * free memory. While the system runs low on memory the budget is halved and the animation split
+ * into fewer frames accordingly, until the header is next resized or detached.</p>
+ */
+
+public abstract class FrameAtlasHeaderViewBase extends HeaderViewBase implements ComponentCallbacks2 {
+    /**
+     * Size the frame cache to hold every frame, see {@link #setFrameCacheBudget(int)}.
+     */
+    public static final int FRAME_CACHE_BUDGET_AUTO = -1;
+
+    private static final int DEFAULT_FRAME_COUNT = 30;
+    private static final int DEFAULT_FRAME_DURATION = 33;
+    private static final int BYTES_PER_PIXEL = 4;
+    // The automatic budget never takes more than this fraction of the heap
+    private static final int MAX_HEAP_FRACTION = 8;
+    // The budget is divided by this while the system runs low on memory
+    private static final int LOW_MEMORY_BUDGET_DIVISOR = 2;
+
+    private int mFrameCount = DEFAULT_FRAME_COUNT;
+    private int mFrameDuration = DEFAULT_FRAME_DURATION;
+    private int mCacheBudget = FRAME_CACHE_BUDGET_AUTO;
+    // How many frames the animation is split into at the current size, 0 when drawn live
+    private int mCachedFrameCount;
+    private boolean mMemoryLow;
+    private FrameCache mFrameCache;
+    // A bitmap of the current size left over by an eviction, rendered into before allocating
+    private Bitmap mReusableFrame;
+    private final Canvas mScratchCanvas = new Canvas();
+
+    private float mPullFraction;
+    private int mFrame;
+    private boolean mRefreshing;
+    private long mRefreshStartTime;
+    private boolean mCallbacksRegistered;
+
+    public FrameAtlasHeaderViewBase(@NonNull Context context) {
+        this(context, null);
+    }
+
+    public FrameAtlasHeaderViewBase(@NonNull Context context, @Nullable AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public FrameAtlasHeaderViewBase(@NonNull Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        setWillNotDraw(false);
+        mFrameCache = new FrameCache(1);
+    }
+
+    @Override
+    public void inflateLayout(Context context) {
+        // Frames are drawn in onDraw(), there is nothing to inflate
+    }
+
+    /**
+     * Draw one frame of the animation. Called at most once per frame while it stays cached, or
+     * from onDraw() while the cache cannot hold at least two frames.
+     *
+     * @param canvas The canvas to draw into, cleared beforehand.
+     * @param width The width of the header.
+     * @param height The height of the header.
+     * @param progress Position of the frame in the animation, from 0 to 1.
+     */
+    protected abstract void renderFrame(@NonNull Canvas canvas, int width, int height,
+            float progress);
+
+    /**
+     * Set how many frames the animation is split into, at most. Drops the frames rendered so far.
+     */
+    public void setFrameCount(int frameCount) {
+        if (frameCount < 2) {
+            throw new IllegalArgumentException("frameCount must be at least 2, was " + frameCount);
+        }
+        mFrameCount = frameCount;
+        resizeFrameCache();
+        invalidate();
+    }
+
+    /**
+     * Set how long each frame is shown while the refresh animation loops.
+     */
+    public void setFrameDuration(int frameDurationMillis) {
+        mFrameDuration = Math.max(1, frameDurationMillis);
+    }
+
+    /**
+     * Set how many bytes of bitmaps the frame cache may hold. The animation is split into fewer
+     * frames when they do not all fit, and drawn live when not even two fit. Drops the frames
+     * rendered so far.
+     *
+     * @param bytes The budget, or {@link #FRAME_CACHE_BUDGET_AUTO} to hold every frame.
+     */
+    public void setFrameCacheBudget(int bytes) {
+        mCacheBudget = bytes == FRAME_CACHE_BUDGET_AUTO ? bytes : Math.max(0, bytes);
+        resizeFrameCache();
+        invalidate();
+    }
+
+    @Override
+    public void onHeaderProgress(float pullFraction, int state) {
+        final boolean refreshing = state == STATE_REFRESHING;
+        if (refreshing && !mRefreshing) {
+            mRefreshStartTime = SystemClock.uptimeMillis();
+        }
+        mRefreshing = refreshing;
+        mPullFraction = Math.max(0f, Math.min(1f, pullFraction));
+        final int frame = refreshing ? mFrame : getPullFrame();
+        if (frame != mFrame || refreshing) {
+            mFrame = frame;
+            invalidate();
+        }
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        final int width = getWidth();
+        final int height = getHeight();
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        if (mRefreshing) {
+            mFrame = (int) ((SystemClock.uptimeMillis() - mRefreshStartTime) / mFrameDuration
+                    % getPlaybackFrameCount());
+            ViewCompat.postInvalidateOnAnimation(this);
+        }
+        final Bitmap frame = getNearestCachedFrame(mFrame);
+        if (frame != null) {
+            canvas.drawBitmap(frame, 0, 0, null);
+        } else {
+            // Nothing is cached yet, or nothing can be, this draws into the header's own canvas
+            renderFrame(canvas, width, height, getFrameProgress(mFrame));
+        }
+    }
+
+    /**
+     * @return The cached frame closest to index, or null if none is cached.
+     */
+    private Bitmap getNearestCachedFrame(int index) {
+        for (int distance = 0; distance < mCachedFrameCount; distance++) {
+            if (index - distance >= 0) {
+                final Bitmap frame = mFrameCache.get(index - distance);
+                if (frame != null) {
+                    return frame;
+                }
+            }
+            if (distance > 0 && index + distance < mCachedFrameCount) {
+                final Bitmap frame = mFrameCache.get(index + distance);
+                if (frame != null) {
+                    return frame;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Render one frame into the cache, reusing an evicted bitmap and the scratch canvas.
+     */
+    private void cacheFrame(int index, int width, int height) {
+        Bitmap frame;
+        if (mReusableFrame != null && mReusableFrame.getWidth() == width
+                && mReusableFrame.getHeight() == height) {
+            frame = mReusableFrame;
+            frame.eraseColor(0);
+        } else {
+            frame = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        }
+        mReusableFrame = null;
+        mScratchCanvas.setBitmap(frame);
+        final int saveCount = mScratchCanvas.save();
+        renderFrame(mScratchCanvas, width, height, getFrameProgress(index));
+        mScratchCanvas.restoreToCount(saveCount);
+        mScratchCanvas.setBitmap(null);
+        mFrameCache.put(index, frame);
+    }
+
+    /**
+     * @return How many frames the animation is played back in.
+     */
+    private int getPlaybackFrameCount() {
+        return mCachedFrameCount >= 2 ? mCachedFrameCount : mFrameCount;
+    }
+
+    private int getPullFrame() {
+        return Math.round(mPullFraction * (getPlaybackFrameCount() - 1));
+    }
+
+    private float getFrameProgress(int index) {
+        return (float) index / (getPlaybackFrameCount() - 1);
+    }
+
+    /**
+     * Work out how many frames fit the budget at the current size and start rendering them.
+     */
+    private void resizeFrameCache() {
+        evictFrames();
+        final long frameBytes = (long) getWidth() * getHeight() * BYTES_PER_PIXEL;
+        int cachedFrameCount = 0;
+        if (frameBytes > 0) {
+            final long budget = mCacheBudget == FRAME_CACHE_BUDGET_AUTO
+                    ? Math.min(frameBytes * mFrameCount,
+                            Runtime.getRuntime().maxMemory() / MAX_HEAP_FRACTION)
+                    : mCacheBudget;
+            final long usableBudget = mMemoryLow ? budget / LOW_MEMORY_BUDGET_DIVISOR : budget;
+            cachedFrameCount = (int) Math.min(mFrameCount, usableBudget / frameBytes);
+        }
+        mCachedFrameCount = cachedFrameCount >= 2 ? cachedFrameCount : 0;
+        mFrameCache = new FrameCache((int) Math.max(1, mCachedFrameCount * frameBytes));
+        mFrame = mRefreshing ? Math.min(mFrame, getPlaybackFrameCount() - 1) : getPullFrame();
+        schedulePrerender();
+    }
+
+    private final Runnable mPrerenderRunnable = new Runnable() {
+        @Override
+        public void run() {
+            final int width = getWidth();
+            final int height = getHeight();
+            if (width <= 0 || height <= 0) {
+                return;
+            }
+            for (int i = 0; i < mCachedFrameCount; i++) {
+                if (mFrameCache.get(i) == null) {
+                    cacheFrame(i, width, height);
+                    if (i + 1 < mCachedFrameCount) {
+                        post(this);
+                    }
+                    return;
+                }
+            }
+        }
+    };
+
+    private void schedulePrerender() {
+        removeCallbacks(mPrerenderRunnable);
+        if (mCachedFrameCount > 0) {
+            post(mPrerenderRunnable);
+        }
+    }
+
+    private void evictFrames() {
+        removeCallbacks(mPrerenderRunnable);
+        mFrameCache.evictAll();
+        mReusableFrame = null;
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        mMemoryLow = false;
+        resizeFrameCache();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (!mCallbacksRegistered) {
+            getContext().getApplicationContext().registerComponentCallbacks(this);
+            mCallbacksRegistered = true;
+        }
+        schedulePrerender();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (mCallbacksRegistered) {
+            getContext().getApplicationContext().unregisterComponentCallbacks(this);
+            mCallbacksRegistered = false;
+        }
+        mMemoryLow = false;
+        evictFrames();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_UI_HIDDEN || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            evictFrames();
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW && !mMemoryLow) {
+            // Fewer frames rather than a smaller cache, so that playback never misses a frame
+            mMemoryLow = true;
+            resizeFrameCache();
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        evictFrames();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        // A new configuration that changes the size of the header goes through onSizeChanged()
+    }
+
+    private class FrameCache extends LruCache<Integer, Bitmap> {
+        FrameCache(int maxSize) {
+            super(maxSize);
+        }
+
+        @Override
+        protected int sizeOf(Integer key, Bitmap value) {
+            // Matches the budget arithmetic in resizeFrameCache()
+            return value.getWidth() * value.getHeight() * BYTES_PER_PIXEL;
+        }
+
+        @Override
+        protected void entryRemoved(boolean evicted, Integer key, Bitmap oldValue,
+                Bitmap newValue) {
+            if (evicted && mReusableFrame == null && oldValue.getWidth() == getWidth()
+                    && oldValue.getHeight() == getHeight()) {
+                // Keep one evicted frame around to render the next one into
+                mReusableFrame = oldValue;
+            }
+        }
+    }
+}
@@ -32,6 +32,14 @@ public abstract class HeaderViewBase extends FrameLayout implements IHeaderView{
         mListener = listener;
     }
 
+    @Override
+    public void onUpToDateChanged(boolean upToDate) {
+    }
+
+    @Override
+    public void onHeaderProgress(float pullFraction, int state) {
+    }
+
     @Override
     public void onAnimationStart() {
         super.onAnimationStart();
@@ -0,0 +1,19 @@
+package com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout.header;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+/**
+ * Creates the header view of an InheritedSwipeRefreshLayout. The layout only asks its factory
+ * for a header the first time the header has to be shown, so screens that are never pulled
+ * never pay for the header inflation.
+ */
+
+public interface HeaderViewFactory {
+    /**
+     * @param context The context of the layout that will host the header.
+     * @return A new, detached header view.
+     */
+    @NonNull
+    HeaderViewBase createHeaderView(@NonNull Context context);
+}
@@ -8,6 +8,39 @@ import android.view.animation.Animation;
  */
 
 public interface IHeaderView {
+    /** The header is hidden at its start position. */
+    public static final int STATE_IDLE = 0;
+    /** The header is being pulled, releasing it now would not refresh. */
+    public static final int STATE_PULLING = 1;
+    /** The header is pulled far enough that releasing it would refresh. */
+    public static final int STATE_ARMED = 2;
+    /** The header moves to or rests at its refreshing position. */
+    public static final int STATE_REFRESHING = 3;
+    /** The refresh is done and the header returns to its start position. */
+    public static final int STATE_COMPLETING = 4;
+    /**
+     * The refresh is triggered but waits for a slot in the layout's
+     * {@link com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout.RefreshScheduler},
+     * the header rests at its refreshing position.
+     */
+    public static final int STATE_PENDING = 5;
+
     public abstract void inflateLayout(Context context);
     public abstract void setAnimationListener(Animation.AnimationListener listener);
+    /**
+     * Called when a pull was answered without refreshing because the content is still fresh,
+     * with true, and with false once the header returns to normal.
+     */
+    public abstract void onUpToDateChanged(boolean upToDate);
+    /**
+     * Called whenever the header moves or changes state, on every frame of a pull or of a
+     * settle animation. Keep it cheap: update drawing state and invalidate rather than request a
+     * layout.
+     *
+     * @param pullFraction How far the header is pulled out, 0 at its start position and 1 at its
+     *        refreshing position. Goes beyond 1 when pulled past it.
+     * @param state One of {@link #STATE_IDLE}, {@link #STATE_PULLING}, {@link #STATE_ARMED},
+     *        {@link #STATE_REFRESHING}, {@link #STATE_COMPLETING} or {@link #STATE_PENDING}.
+     */
+    public abstract void onHeaderProgress(float pullFraction, int state);
 }
@@ -0,0 +1,34 @@
+package com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout.header;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.AttributeSet;
+import android.view.LayoutInflater;
+
+import com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.R;
+
+/**
+ * Default footer shown while InheritedSwipeRefreshLayout is loading more content.
+ */
+
+public class SimpleFooterViewImpl extends HeaderViewBase{
+
+
+    public SimpleFooterViewImpl(@NonNull Context context) {
+        super(context);
+    }
+
+    public SimpleFooterViewImpl(@NonNull Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    public SimpleFooterViewImpl(@NonNull Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+    }
+
+    @Override
+    public void inflateLayout(Context context) {
+        LayoutInflater.from(context).inflate(R.layout.default_footer, this);
+    }
+}
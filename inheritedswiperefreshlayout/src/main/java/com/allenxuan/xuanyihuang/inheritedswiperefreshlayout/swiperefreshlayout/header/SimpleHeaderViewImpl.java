@@ -5,6 +5,7 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.AttributeSet;
 import android.view.LayoutInflater;
+import android.widget.TextView;
 
 import com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.R;
 
@@ -13,7 +14,8 @@ import com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.R;
  */
 
 public class SimpleHeaderViewImpl extends HeaderViewBase{
-
+    private boolean mUpToDate;
+    private boolean mPending;
 
     public SimpleHeaderViewImpl(@NonNull Context context) {
         super(context);
@@ -31,4 +33,25 @@ public class SimpleHeaderViewImpl extends HeaderViewBase{
     public void inflateLayout(Context context) {
         LayoutInflater.from(context).inflate(R.layout.default_header, this);
     }
+
+    @Override
+    public void onUpToDateChanged(boolean upToDate) {
+        mUpToDate = upToDate;
+        updateText();
+    }
+
+    @Override
+    public void onHeaderProgress(float pullFraction, int state) {
+        final boolean pending = state == STATE_PENDING;
+        if (pending != mPending) {
+            mPending = pending;
+            updateText();
+        }
+    }
+
+    private void updateText() {
+        ((TextView) findViewById(R.id.isrl_header_text)).setText(mUpToDate
+                ? R.string.isrl_header_up_to_date
+                : mPending ? R.string.isrl_header_pending : R.string.isrl_header_default);
+    }
 }
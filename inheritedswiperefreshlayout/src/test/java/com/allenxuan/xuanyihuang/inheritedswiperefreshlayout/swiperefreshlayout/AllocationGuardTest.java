@@ -0,0 +1,209 @@
+package com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout;
+
+import android.os.SystemClock;
+import android.support.v4.view.ViewCompat;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.animation.Animation;
+import android.view.animation.Transformation;
+
+import com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout.header.HeaderViewBase;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Fails if the steady-state paths of a pull, i.e. move events, nested scrolls and settle
+ * animation frames, allocate anything. Each path is warmed up first so that lazily created
+ * objects, such as the header, are not counted. The transitions between the phases of a full
+ * pull, refresh and complete cycle may allocate, their cost is only reported, and only when
+ * benchmarks are enabled, see {@link BenchmarkRunner}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 26)
+public class AllocationGuardTest {
+    private static final int LIST_ITEM_COUNT = 1000;
+    private static final int WARMUP_ITERATIONS = 500;
+    private static final int ITERATIONS = 2000;
+    private static final float START_Y = 100f;
+    // Keeps the pull between the touch slop and the 80px trigger distance
+    private static final int STEADY_MOVE_COUNT = 16;
+    private static final float STEADY_MOVE_STEP = 6f;
+
+    private InheritedSwipeRefreshLayout mLayout;
+    private View mList;
+    private MotionEvent mDown;
+    private MotionEvent[] mMoves;
+    private MotionEvent mReleaseAboveTrigger;
+    private final int[] mConsumed = new int[2];
+    private final Transformation mTransformation = new Transformation();
+
+    @Before
+    public void setUp() {
+        mLayout = TestLayouts.createWithList(RuntimeEnvironment.application, LIST_ITEM_COUNT);
+        mList = mLayout.getChildAt(0);
+        final long downTime = SystemClock.uptimeMillis();
+        mDown = MotionEvent.obtain(downTime, downTime, MotionEvent.ACTION_DOWN,
+                TestLayouts.WIDTH / 2, START_Y, 0);
+        mMoves = new MotionEvent[STEADY_MOVE_COUNT];
+        for (int i = 0; i < STEADY_MOVE_COUNT; i++) {
+            // Up and down around the middle of the pull, so that every move changes the offset
+            final int step = i < STEADY_MOVE_COUNT / 2 ? i : STEADY_MOVE_COUNT - i;
+            mMoves[i] = MotionEvent.obtain(downTime, downTime + 8 * (i + 1),
+                    MotionEvent.ACTION_MOVE, TestLayouts.WIDTH / 2,
+                    START_Y + 40f + step * STEADY_MOVE_STEP, 0);
+        }
+        mReleaseAboveTrigger = MotionEvent.obtain(downTime, downTime + 8 * (STEADY_MOVE_COUNT + 1),
+                MotionEvent.ACTION_UP, TestLayouts.WIDTH / 2, START_Y + 400f, 0);
+        Assume.assumeTrue(BenchmarkRunner.allocatedBytesOf(1, new BenchmarkRunner.Operation() {
+            @Override
+            public void run(int iteration) {
+            }
+        }) >= 0);
+    }
+
+    @After
+    public void tearDown() {
+        mDown.recycle();
+        TestLayouts.recycle(mMoves);
+        mReleaseAboveTrigger.recycle();
+    }
+
+    @Test
+    public void steadyStateMoveEventsDoNotAllocate() {
+        startPull();
+        final BenchmarkRunner.Operation move = new BenchmarkRunner.Operation() {
+            @Override
+            public void run(int iteration) {
+                mLayout.onTouchEvent(mMoves[iteration % STEADY_MOVE_COUNT]);
+            }
+        };
+        warmUp(move);
+        assertTrue(mLayout.mCurrentTargetOffsetTop > mLayout.mOriginalOffsetTop);
+        assertEquals("bytes allocated by move events", 0,
+                BenchmarkRunner.allocatedBytesOf(ITERATIONS, move));
+    }
+
+    @Test
+    public void steadyStateNestedScrollDoesNotAllocate() {
+        mLayout.onStartNestedScroll(mList, mList, ViewCompat.SCROLL_AXIS_VERTICAL);
+        mLayout.onNestedScrollAccepted(mList, mList, ViewCompat.SCROLL_AXIS_VERTICAL);
+        final BenchmarkRunner.Operation scroll = new BenchmarkRunner.Operation() {
+            @Override
+            public void run(int iteration) {
+                // Pull the header out and push it back in, without ever releasing it
+                if (iteration % 20 < 10) {
+                    mLayout.onNestedScroll(mList, 0, 0, 0, -3);
+                } else {
+                    mConsumed[0] = 0;
+                    mConsumed[1] = 0;
+                    mLayout.onNestedPreScroll(mList, 0, 3, mConsumed);
+                }
+            }
+        };
+        warmUp(scroll);
+        assertEquals("bytes allocated by nested scrolls", 0,
+                BenchmarkRunner.allocatedBytesOf(ITERATIONS, scroll));
+        mLayout.onStopNestedScroll(mList);
+    }
+
+    @Test
+    public void fullCycleSettleFramesDoNotAllocate() {
+        // Run a cycle first so that everything created once per layout exists
+        runCycle();
+        runCycle();
+    }
+
+    private void runCycle() {
+        startPull();
+        for (MotionEvent move : mMoves) {
+            mLayout.onTouchEvent(move);
+        }
+        final long release = BenchmarkRunner.allocatedBytesOf(1, new BenchmarkRunner.Operation() {
+            @Override
+            public void run(int iteration) {
+                mLayout.onTouchEvent(mReleaseAboveTrigger);
+            }
+        });
+        assertTrue(mLayout.isRefreshing());
+        assertEquals("bytes allocated by frames moving to the refreshing position", 0,
+                settleFrameAllocations("refreshing position"));
+
+        final long complete = BenchmarkRunner.allocatedBytesOf(1, new BenchmarkRunner.Operation() {
+            @Override
+            public void run(int iteration) {
+                mLayout.setRefreshing(false);
+            }
+        });
+        assertEquals("bytes allocated by frames returning to start", 0,
+                settleFrameAllocations("start"));
+        mLayout.reset();
+        BenchmarkRunner.report("cycle transitions: release " + release + " B, complete "
+                + complete + " B");
+    }
+
+    /**
+     * Run the header transition in flight frame by frame, the way View.draw() does, through the
+     * animation, its listeners and the header callbacks.
+     *
+     * @return The bytes allocated by every frame but the last one. The last frame ends the
+     *         transition and runs what is chained to it, its cost is only reported when
+     *         benchmarks are enabled.
+     */
+    private long settleFrameAllocations(String destination) {
+        final HeaderViewBase header = mLayout.mHeaderView;
+        final Animation animation = header.getAnimation();
+        assertNotNull(animation);
+        // Every frame before the one reaching the end of the transition
+        final int runningFrameCount = (int) ((animation.getDuration() - 1)
+                / TestLayouts.FRAME_MILLIS) + 1;
+        final long frames = BenchmarkRunner.allocatedBytesOf(runningFrameCount,
+                new BenchmarkRunner.Operation() {
+                    @Override
+                    public void run(int iteration) {
+                        if (iteration == 0) {
+                            header.onAnimationStart();
+                        }
+                        assertTrue(animation.getTransformation(
+                                iteration * TestLayouts.FRAME_MILLIS, mTransformation));
+                    }
+                });
+        final long end = BenchmarkRunner.allocatedBytesOf(1, new BenchmarkRunner.Operation() {
+            @Override
+            public void run(int iteration) {
+                long time = runningFrameCount * TestLayouts.FRAME_MILLIS;
+                while (animation.getTransformation(time, mTransformation)) {
+                    time += TestLayouts.FRAME_MILLIS;
+                }
+                header.clearAnimation();
+                header.onAnimationEnd();
+            }
+        });
+        BenchmarkRunner.report("settle to " + destination + ": " + runningFrameCount
+                + " frames, last frame " + end + " B");
+        return frames;
+    }
+
+    private void startPull() {
+        // Route the down like ViewGroup.dispatchTouchEvent, the first move starts the drag
+        mLayout.onInterceptTouchEvent(mDown);
+        mLayout.onTouchEvent(mDown);
+        mLayout.onTouchEvent(mMoves[0]);
+    }
+
+    private static void warmUp(BenchmarkRunner.Operation operation) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            operation.run(i);
+        }
+    }
+}
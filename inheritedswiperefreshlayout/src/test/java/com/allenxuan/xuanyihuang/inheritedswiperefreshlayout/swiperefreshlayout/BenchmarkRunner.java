@@ -0,0 +1,129 @@
+package com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Minimal benchmark loop for local JVM tests: warms an operation up, then reports the average
+ * wall time and the bytes allocated by the calling thread per operation.
+ *
+ * <p>Benchmarks only run, and other tests only report their measurements, with
+ * {@code -Disrl.benchmark=true}. Results are appended to
+ * {@code build/reports/benchmark/results.txt}, or to the file given with
+ * {@code -Disrl.benchmark.output=<path>}, rather than printed with the test output.</p>
+ */
+
+final class BenchmarkRunner {
+    static final String ENABLED_PROPERTY = "isrl.benchmark";
+    static final String OUTPUT_PROPERTY = "isrl.benchmark.output";
+    private static final String DEFAULT_OUTPUT = "build/reports/benchmark/results.txt";
+
+    interface Operation {
+        void run(int iteration);
+    }
+
+    static final class Result {
+        final String name;
+        final double nanosPerOp;
+        final double bytesPerOp;
+
+        Result(String name, double nanosPerOp, double bytesPerOp) {
+            this.name = name;
+            this.nanosPerOp = nanosPerOp;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%-40s %12.1f ns/op %10.1f B/op",
+                    name, nanosPerOp, bytesPerOp);
+        }
+    }
+
+    private BenchmarkRunner() {
+    }
+
+    static Result measure(String name, int warmupIterations, int iterations, Operation operation) {
+        for (int i = 0; i < warmupIterations; i++) {
+            operation.run(i);
+        }
+        final long allocatedBefore = allocatedBytes();
+        final long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            operation.run(i);
+        }
+        final long elapsed = System.nanoTime() - start;
+        final long allocated = allocatedBytes() - allocatedBefore;
+        final Result result = new Result(name, (double) elapsed / iterations,
+                (double) allocated / iterations);
+        report(result.toString());
+        return result;
+    }
+
+    /**
+     * @return Whether benchmarks were asked for, see {@link #ENABLED_PROPERTY}.
+     */
+    static boolean isEnabled() {
+        return Boolean.getBoolean(ENABLED_PROPERTY);
+    }
+
+    /**
+     * Append a line to the benchmark report. Does nothing unless benchmarks were asked for, so
+     * that regular test runs leave the report alone.
+     */
+    static synchronized void report(String line) {
+        if (!isEnabled()) {
+            return;
+        }
+        final File file = new File(System.getProperty(OUTPUT_PROPERTY, DEFAULT_OUTPUT));
+        final File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IllegalStateException("Cannot create " + dir);
+        }
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file, true),
+                StandardCharsets.UTF_8)) {
+            writer.write(line);
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write the benchmark report to " + file, e);
+        }
+    }
+
+    /**
+     * Run an operation and count the bytes it allocated, without the cost of the counting itself.
+     *
+     * @return The allocated bytes, or -1 if the JVM cannot tell.
+     */
+    static long allocatedBytesOf(int iterations, Operation operation) {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        // Reading the counter may allocate by itself, measure that first
+        final long overheadStart = allocatedBytes();
+        final long overhead = allocatedBytes() - overheadStart;
+        final long before = allocatedBytes();
+        for (int i = 0; i < iterations; i++) {
+            operation.run(i);
+        }
+        return Math.max(0, allocatedBytes() - before - overhead);
+    }
+
+    /**
+     * @return Bytes allocated so far by the current thread, or 0 if the JVM cannot tell.
+     */
+    static long allocatedBytes() {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
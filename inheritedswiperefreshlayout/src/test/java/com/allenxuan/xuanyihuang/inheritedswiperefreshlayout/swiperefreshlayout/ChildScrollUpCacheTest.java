@@ -0,0 +1,129 @@
+package com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.support.v7.widget.RecyclerView;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.AbsListView;
+import android.widget.ListView;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowAbsListView;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that a cached canChildScrollUp() answer follows the scrolls of the target as they
+ * happen, with no traversal in between to dispatch view tree notifications.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 26)
+public class ChildScrollUpCacheTest {
+    private static final float START_Y = 100f;
+    // Well past the touch slop
+    private static final float PULL_DISTANCE = 200f;
+    private static final int SCROLL_DISTANCE = 300;
+
+    @After
+    public void tearDown() {
+        ShadowLooper.unPauseMainLooper();
+    }
+
+    @Test
+    public void interceptSeesAScrollBeforeTheNextTraversal() {
+        final InheritedSwipeRefreshLayout layout = createAttached(TestLayouts.createWithList(
+                RuntimeEnvironment.application, 50));
+        final RecyclerView list = (RecyclerView) layout.getChildAt(0);
+        final long downTime = SystemClock.uptimeMillis();
+        final MotionEvent down = MotionEvent.obtain(downTime, downTime,
+                MotionEvent.ACTION_DOWN, TestLayouts.WIDTH / 2, START_Y, 0);
+        final MotionEvent move = MotionEvent.obtain(downTime, downTime + 16,
+                MotionEvent.ACTION_MOVE, TestLayouts.WIDTH / 2, START_Y + PULL_DISTANCE, 0);
+
+        assertFalse(layout.onInterceptTouchEvent(down));
+        assertFalse(layout.canChildScrollUp());
+
+        // The list scrolls away from its top, e.g. flung by an earlier gesture
+        list.scrollBy(0, SCROLL_DISTANCE);
+        assertTrue(layout.canChildScrollUp());
+        // Pulling down scrolls the list back, it must not start pulling the header
+        assertFalse(layout.onInterceptTouchEvent(move));
+
+        list.scrollBy(0, -SCROLL_DISTANCE);
+        assertFalse(layout.canChildScrollUp());
+        down.recycle();
+        move.recycle();
+    }
+
+    @Test
+    public void otherTargetsAreQueriedEveryTime() {
+        final InheritedSwipeRefreshLayout layout = new InheritedSwipeRefreshLayout(
+                RuntimeEnvironment.application);
+        final ScrollableView target = new ScrollableView(RuntimeEnvironment.application);
+        layout.addView(target);
+        createAttached(layout);
+
+        assertFalse(layout.canChildScrollUp());
+        target.mCanScrollUp = true;
+        assertTrue(layout.canChildScrollUp());
+    }
+
+    @Test
+    public void listTargetsKeepTheScrollListenerOfTheApp() {
+        final InheritedSwipeRefreshLayout layout = new InheritedSwipeRefreshLayout(
+                RuntimeEnvironment.application);
+        final ListView list = new ListView(RuntimeEnvironment.application);
+        final AbsListView.OnScrollListener listener = new AbsListView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(AbsListView view, int scrollState) {
+            }
+
+            @Override
+            public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount,
+                    int totalItemCount) {
+            }
+        };
+        list.setOnScrollListener(listener);
+        layout.addView(list);
+        createAttached(layout);
+        final ShadowAbsListView shadowList = Shadow.extract(list);
+        assertSame(listener, shadowList.getOnScrollListener());
+
+        layout.setChildScrollUpCacheEnabled(false);
+        assertSame(listener, shadowList.getOnScrollListener());
+    }
+
+    private static InheritedSwipeRefreshLayout createAttached(InheritedSwipeRefreshLayout layout) {
+        layout.setChildScrollUpCacheEnabled(true);
+        TestLayouts.attach(layout);
+        // Nothing dispatches view tree notifications from here on
+        ShadowLooper.pauseMainLooper();
+        return layout;
+    }
+
+    /**
+     * A target that never reports its scrolls.
+     */
+    private static class ScrollableView extends View {
+        boolean mCanScrollUp;
+
+        ScrollableView(Context context) {
+            super(context);
+        }
+
+        @Override
+        public boolean canScrollVertically(int direction) {
+            return direction < 0 ? mCanScrollUp : super.canScrollVertically(direction);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DragCurveTableTest {
+    private static final float TOTAL_DRAG_DISTANCE = 240f;
+    private static final float SLINGSHOT_DISTANCE = 240f;
+
+    @Test
+    public void lookupMatchesCurveWithinAPixel() {
+        final DragCurveTable table = new DragCurveTable();
+        table.build(DragCurves.SLINGSHOT, TOTAL_DRAG_DISTANCE, SLINGSHOT_DISTANCE);
+        for (float overscroll = 0; overscroll < 4 * TOTAL_DRAG_DISTANCE; overscroll += 0.5f) {
+            assertEquals(DragCurves.SLINGSHOT.getHeaderOffset(overscroll, TOTAL_DRAG_DISTANCE,
+                    SLINGSHOT_DISTANCE), table.getHeaderOffset(overscroll), 1f);
+        }
+    }
+
+    @Test
+    public void lookupIsHeldBeyondSampledRange() {
+        final DragCurveTable table = new DragCurveTable();
+        table.build(DragCurves.LINEAR, TOTAL_DRAG_DISTANCE, SLINGSHOT_DISTANCE);
+        assertEquals(2 * SLINGSHOT_DISTANCE, table.getHeaderOffset(100 * TOTAL_DRAG_DISTANCE), 0f);
+    }
+
+    @Test
+    public void degenerateDistancesKeepHeaderAtStart() {
+        final DragCurveTable table = new DragCurveTable();
+        table.build(DragCurves.SLINGSHOT, TOTAL_DRAG_DISTANCE, 0f);
+        assertEquals(0f, table.getHeaderOffset(TOTAL_DRAG_DISTANCE), 0f);
+    }
+}
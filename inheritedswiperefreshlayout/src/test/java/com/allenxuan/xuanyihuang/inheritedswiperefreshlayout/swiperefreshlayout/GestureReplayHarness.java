@@ -0,0 +1,67 @@
+package com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout;
+
+import android.view.MotionEvent;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Replays recorded touch events against an InheritedSwipeRefreshLayout through its real
+ * dispatch path and reports the CPU time, the allocated bytes and the header offset after every
+ * event, so that two builds can be compared on identical input.
+ */
+
+final class GestureReplayHarness {
+
+    static final class Report {
+        final int eventCount;
+        final long cpuNanos;
+        final long allocatedBytes;
+        // Header offset from its start position after each replayed event
+        final int[] offsetTrajectory;
+
+        Report(int eventCount, long cpuNanos, long allocatedBytes, int[] offsetTrajectory) {
+            this.eventCount = eventCount;
+            this.cpuNanos = cpuNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.offsetTrajectory = offsetTrajectory;
+        }
+
+        int maxOffset() {
+            int max = 0;
+            for (int offset : offsetTrajectory) {
+                max = Math.max(max, offset);
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "%d events, %.1f us cpu, %d B allocated, max offset %d px, offsets %s",
+                    eventCount, cpuNanos / 1000.0, allocatedBytes, maxOffset(),
+                    Arrays.toString(offsetTrajectory));
+        }
+    }
+
+    private GestureReplayHarness() {
+    }
+
+    static Report replay(InheritedSwipeRefreshLayout layout, MotionEvent[] events) {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        final int startOffset = layout.mCurrentTargetOffsetTop;
+        final int[] trajectory = new int[events.length];
+        final long allocatedBefore = BenchmarkRunner.allocatedBytes();
+        final long cpuBefore = bean.getCurrentThreadCpuTime();
+        for (int i = 0; i < events.length; i++) {
+            layout.dispatchTouchEvent(events[i]);
+            trajectory[i] = layout.mCurrentTargetOffsetTop - startOffset;
+        }
+        final long cpu = bean.getCurrentThreadCpuTime() - cpuBefore;
+        // The trajectory array is allocated up front so that it is not counted
+        final long allocated = BenchmarkRunner.allocatedBytes() - allocatedBefore;
+        return new Report(events.length, cpu, allocated, trajectory);
+    }
+}
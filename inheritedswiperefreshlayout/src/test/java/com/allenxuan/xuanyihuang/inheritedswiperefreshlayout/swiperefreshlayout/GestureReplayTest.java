@@ -0,0 +1,128 @@
+package com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout;
+
+import android.os.SystemClock;
+import android.view.MotionEvent;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays gestures against a layout hosting a large list. Pass
+ * {@code -Disrl.gestureFile=<path>} to also replay a gesture recorded on a device with a
+ * {@link GestureRecorder}. Replay reports go to the benchmark report, see
+ * {@link BenchmarkRunner}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 26)
+public class GestureReplayTest {
+    private static final int LIST_ITEM_COUNT = 5000;
+    private static final String GESTURE_FILE_PROPERTY = "isrl.gestureFile";
+
+    @Test
+    public void recordingRoundTripsWithHistoricalSamples() throws IOException {
+        final MotionEvent[] pull = obtainBatchedPull();
+        final InheritedSwipeRefreshLayout layout = TestLayouts.createWithList(
+                RuntimeEnvironment.application, LIST_ITEM_COUNT);
+        final GestureRecorder recorder = new GestureRecorder();
+        layout.setGestureRecorder(recorder);
+        for (MotionEvent event : pull) {
+            layout.dispatchTouchEvent(event);
+        }
+        assertEquals(pull.length, recorder.getEventCount());
+
+        final MotionEvent[] replayed = readBack(recorder, pull[0].getDownTime());
+        assertEquals(pull.length, replayed.length);
+        for (int i = 0; i < pull.length; i++) {
+            assertEquals(pull[i].getAction(), replayed[i].getAction());
+            assertEquals(pull[i].getEventTime(), replayed[i].getEventTime());
+            assertEquals(pull[i].getHistorySize(), replayed[i].getHistorySize());
+            assertEquals(pull[i].getY(), replayed[i].getY(), 0f);
+            for (int h = 0; h < pull[i].getHistorySize(); h++) {
+                assertEquals(pull[i].getHistoricalY(h), replayed[i].getHistoricalY(h), 0f);
+            }
+        }
+        TestLayouts.recycle(pull);
+        TestLayouts.recycle(replayed);
+    }
+
+    @Test
+    public void replayIsDeterministic() throws IOException {
+        final MotionEvent[] pull = obtainBatchedPull();
+        final GestureRecorder recorder = new GestureRecorder();
+        for (MotionEvent event : pull) {
+            recorder.record(event);
+        }
+        TestLayouts.recycle(pull);
+
+        final GestureReplayHarness.Report first = replayOnNewLayout(recorder);
+        final GestureReplayHarness.Report second = replayOnNewLayout(recorder);
+        BenchmarkRunner.report("replay 1: " + first);
+        BenchmarkRunner.report("replay 2: " + second);
+        assertTrue(first.maxOffset() > 0);
+        assertArrayEquals(first.offsetTrajectory, second.offsetTrajectory);
+    }
+
+    @Test
+    public void replayRecordedGestureFile() throws IOException {
+        final String path = System.getProperty(GESTURE_FILE_PROPERTY);
+        Assume.assumeTrue(path != null);
+        final InheritedSwipeRefreshLayout layout = TestLayouts.createWithList(
+                RuntimeEnvironment.application, LIST_ITEM_COUNT);
+        final MotionEvent[] events;
+        try (InputStream in = new FileInputStream(new File(path))) {
+            events = GestureRecorder.readEvents(in, SystemClock.uptimeMillis());
+        }
+        BenchmarkRunner.report(path + ": " + GestureReplayHarness.replay(layout, events));
+        TestLayouts.recycle(events);
+    }
+
+    private static GestureReplayHarness.Report replayOnNewLayout(GestureRecorder recorder)
+            throws IOException {
+        final InheritedSwipeRefreshLayout layout = TestLayouts.createWithList(
+                RuntimeEnvironment.application, LIST_ITEM_COUNT);
+        // Fixed start time, so that both replays see identical events
+        final MotionEvent[] events = readBack(recorder, 1000);
+        final GestureReplayHarness.Report report = GestureReplayHarness.replay(layout, events);
+        TestLayouts.recycle(events);
+        return report;
+    }
+
+    private static MotionEvent[] readBack(GestureRecorder recorder, long startTime)
+            throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        recorder.writeTo(out);
+        return GestureRecorder.readEvents(new ByteArrayInputStream(out.toByteArray()), startTime);
+    }
+
+    /**
+     * @return A pull whose moves carry batched historical samples, like on a fast digitizer.
+     */
+    private static MotionEvent[] obtainBatchedPull() {
+        final MotionEvent[] pull = TestLayouts.obtainPull(100f, 12f, 20);
+        for (int i = 1; i < pull.length - 1; i++) {
+            final MotionEvent move = pull[i];
+            final MotionEvent batched = MotionEvent.obtain(move.getDownTime(),
+                    move.getEventTime() - 4, MotionEvent.ACTION_MOVE, move.getX(),
+                    move.getY() - 6f, 0);
+            batched.addBatch(move.getEventTime(), move.getX(), move.getY(), 1f, 1f, 0);
+            move.recycle();
+            pull[i] = batched;
+        }
+        return pull;
+    }
+}
@@ -0,0 +1,269 @@
+package com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout;
+
+import android.content.Context;
+import android.support.v4.view.ViewCompat;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout.header.HeaderViewBase;
+import com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout.header.HeaderViewFactory;
+import com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout.header.IHeaderView;
+import com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout.header.SimpleHeaderViewImpl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the header comes to rest, with its layers demoted, whichever way a pull ends.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 26)
+public class HeaderSettleTest {
+    // Short of the 80px trigger distance
+    private static final float SHORT_PULL_STEP = 3f;
+    private static final int SHORT_PULL_MOVE_COUNT = 20;
+    // Well past the trigger distance
+    private static final float LONG_PULL_STEP = 12f;
+
+    private InheritedSwipeRefreshLayout mLayout;
+    private View mList;
+    private final int[] mConsumed = new int[2];
+
+    @Before
+    public void setUp() {
+        mLayout = TestLayouts.createWithList(RuntimeEnvironment.application, 50);
+        mList = mLayout.getChildAt(0);
+        mLayout.setLayerPromotion(InheritedSwipeRefreshLayout.LAYER_PROMOTION_HEADER);
+    }
+
+    @Test
+    public void nestedPullPushedBackToStartSettles() {
+        mLayout.onStartNestedScroll(mList, mList, ViewCompat.SCROLL_AXIS_VERTICAL);
+        mLayout.onNestedScrollAccepted(mList, mList, ViewCompat.SCROLL_AXIS_VERTICAL);
+        mLayout.onNestedScroll(mList, 0, 0, 0, -30);
+        assertNotNull(mLayout.mHeaderView);
+        assertEquals(View.LAYER_TYPE_HARDWARE, mLayout.mHeaderView.getLayerType());
+
+        // Scroll back up by exactly the pull, nothing is left to animate
+        mLayout.onNestedPreScroll(mList, 0, 30, mConsumed);
+        assertEquals(30, mConsumed[1]);
+        mLayout.onStopNestedScroll(mList);
+
+        assertEquals(View.LAYER_TYPE_NONE, mLayout.mHeaderView.getLayerType());
+        assertEquals(mLayout.mOriginalOffsetTop, mLayout.mCurrentTargetOffsetTop);
+        assertEquals(RefreshStateMachine.STATE_IDLE, mLayout.mStateMachine.getState());
+    }
+
+    @Test
+    public void nestedPullPushedBackToStartAbortsTheSpeculativeRefresh() {
+        final List<String> calls = new ArrayList<>();
+        mLayout.setOnSpeculativeRefreshListener(
+                new InheritedSwipeRefreshLayout.OnSpeculativeRefreshListener() {
+            @Override
+            public void onPrepareRefresh() {
+                calls.add("prepare");
+            }
+
+            @Override
+            public void onAbortRefresh() {
+                calls.add("abort");
+            }
+        }, 0.25f);
+
+        for (int pull = 0; pull < 2; pull++) {
+            mLayout.onStartNestedScroll(mList, mList, ViewCompat.SCROLL_AXIS_VERTICAL);
+            mLayout.onNestedScrollAccepted(mList, mList, ViewCompat.SCROLL_AXIS_VERTICAL);
+            mLayout.onNestedScroll(mList, 0, 0, 0, -30);
+            mLayout.onNestedPreScroll(mList, 0, 30, mConsumed);
+            mLayout.onStopNestedScroll(mList);
+        }
+
+        // Each pull prepares again once the previous one was aborted
+        assertEquals(Arrays.asList("prepare", "abort", "prepare", "abort"), calls);
+    }
+
+    @Test
+    public void cancelledPullGivesThePooledHeaderBack() {
+        final HeaderViewPool pool = new HeaderViewPool(new HeaderViewFactory() {
+            @Override
+            public HeaderViewBase createHeaderView(Context context) {
+                return new SimpleHeaderViewImpl(context);
+            }
+        });
+        mLayout.setHeaderViewPool(pool);
+        TestLayouts.attach(mLayout);
+
+        dispatch(TestLayouts.obtainPull(100f, SHORT_PULL_STEP, SHORT_PULL_MOVE_COUNT));
+        final HeaderViewBase header = mLayout.mHeaderView;
+        assertNotNull(header);
+        assertFalse(mLayout.isRefreshing());
+
+        TestLayouts.finishHeaderAnimations(mLayout);
+        assertEquals(mLayout.mOriginalOffsetTop, mLayout.mCurrentTargetOffsetTop);
+        assertEquals(View.GONE, header.getVisibility());
+        // The next pull right away finds the header still in place
+        ShadowLooper.runUiThreadTasks();
+        assertSame(header, mLayout.mHeaderView);
+        dispatch(TestLayouts.obtainPull(100f, SHORT_PULL_STEP, SHORT_PULL_MOVE_COUNT));
+        TestLayouts.finishHeaderAnimations(mLayout);
+        assertSame(header, mLayout.mHeaderView);
+
+        // Given back once the layout stays idle
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        assertNull(mLayout.mHeaderView);
+        assertEquals(1, pool.getCreatedCount());
+        assertSame(header, pool.acquire(RuntimeEnvironment.application));
+    }
+
+    @Test
+    public void cancelledDragReturnsToStart() {
+        final MotionEvent[] events = TestLayouts.obtainPull(100f, LONG_PULL_STEP,
+                SHORT_PULL_MOVE_COUNT);
+        // Everything but the up, e.g. a parent stealing the gesture mid-drag
+        for (int i = 0; i < events.length - 1; i++) {
+            mLayout.dispatchTouchEvent(events[i]);
+        }
+        assertEquals(RefreshStateMachine.STATE_DRAGGING, mLayout.mStateMachine.getState());
+        final MotionEvent cancel = MotionEvent.obtain(events[events.length - 1]);
+        cancel.setAction(MotionEvent.ACTION_CANCEL);
+        mLayout.dispatchTouchEvent(cancel);
+        cancel.recycle();
+        TestLayouts.recycle(events);
+        assertEquals(RefreshStateMachine.STATE_RETURNING_TO_START,
+                mLayout.mStateMachine.getState());
+
+        TestLayouts.finishHeaderAnimations(mLayout);
+        assertEquals(RefreshStateMachine.STATE_IDLE, mLayout.mStateMachine.getState());
+        assertEquals(mLayout.mOriginalOffsetTop, mLayout.mCurrentTargetOffsetTop);
+        assertEquals(View.LAYER_TYPE_NONE, mLayout.mHeaderView.getLayerType());
+        assertNull(mLayout.getRefreshRequest());
+    }
+
+    @Test
+    public void resetInScaleModePutsTheTargetBack() {
+        mLayout.setProgressViewEndTarget(true, mLayout.getProgressViewEndOffset());
+        final MotionEvent[] events = TestLayouts.obtainPull(100f, SHORT_PULL_STEP,
+                SHORT_PULL_MOVE_COUNT);
+        for (int i = 0; i < events.length - 1; i++) {
+            mLayout.dispatchTouchEvent(events[i]);
+        }
+        TestLayouts.recycle(events);
+        assertTrue(mLayout.mCurrentTargetOffsetTop > mLayout.mOriginalOffsetTop);
+
+        // Disabling mid-pull resets the layout without any animation
+        mLayout.setEnabled(false);
+        assertEquals(mLayout.mOriginalOffsetTop, mLayout.mCurrentTargetOffsetTop);
+        TestLayouts.measureAndLayout(mLayout);
+        assertEquals(mLayout.getPaddingTop(), mList.getTop());
+    }
+
+    @Test
+    public void disablingEndsTheRefresh() {
+        recordHeaderStates();
+        assertTrue(mLayout.requestRefresh());
+        TestLayouts.finishHeaderAnimations(mLayout);
+        final RefreshRequest request = mLayout.getRefreshRequest();
+        assertNotNull(request);
+
+        mLayout.setEnabled(false);
+        assertTrue(request.isCancelled());
+        assertFalse(mLayout.isRefreshing());
+        assertEquals(RefreshStateMachine.STATE_IDLE, mLayout.mStateMachine.getState());
+
+        mLayout.setEnabled(true);
+        assertTrue(mLayout.requestRefresh());
+    }
+
+    @Test
+    public void detachingEndsTheRefresh() {
+        recordHeaderStates();
+        TestLayouts.attach(mLayout);
+        assertTrue(mLayout.requestRefresh());
+        TestLayouts.finishHeaderAnimations(mLayout);
+        assertNotNull(mLayout.getRefreshRequest());
+
+        ((ViewGroup) mLayout.getParent()).removeView(mLayout);
+        assertNull(mLayout.getRefreshRequest());
+        assertFalse(mLayout.isRefreshing());
+        assertEquals(RefreshStateMachine.STATE_IDLE, mLayout.mStateMachine.getState());
+
+        TestLayouts.attach(mLayout);
+        assertTrue(mLayout.requestRefresh());
+    }
+
+    @Test
+    public void cancelledPullEndsIdle() {
+        final List<Integer> states = recordHeaderStates();
+        dispatch(TestLayouts.obtainPull(100f, SHORT_PULL_STEP, SHORT_PULL_MOVE_COUNT));
+        TestLayouts.finishHeaderAnimations(mLayout);
+
+        assertEquals(Arrays.asList(IHeaderView.STATE_PULLING, IHeaderView.STATE_IDLE), states);
+    }
+
+    @Test
+    public void refreshCycleEndsIdle() {
+        final List<Integer> states = recordHeaderStates();
+        dispatch(TestLayouts.obtainPull(100f, LONG_PULL_STEP, SHORT_PULL_MOVE_COUNT));
+        TestLayouts.finishHeaderAnimations(mLayout);
+        assertNotNull(mLayout.getRefreshRequest());
+
+        mLayout.setRefreshing(false);
+        TestLayouts.finishHeaderAnimations(mLayout);
+
+        assertEquals(Arrays.asList(IHeaderView.STATE_PULLING, IHeaderView.STATE_ARMED,
+                IHeaderView.STATE_REFRESHING, IHeaderView.STATE_COMPLETING,
+                IHeaderView.STATE_IDLE), states);
+        assertEquals(RefreshStateMachine.STATE_IDLE, mLayout.mStateMachine.getState());
+    }
+
+    /**
+     * @return The states the header is told about, in order, without repeats.
+     */
+    private List<Integer> recordHeaderStates() {
+        final List<Integer> states = new ArrayList<>();
+        mLayout.setHeaderViewFactory(new HeaderViewFactory() {
+            @Override
+            public HeaderViewBase createHeaderView(Context context) {
+                return new SimpleHeaderViewImpl(context) {
+                    @Override
+                    public void onHeaderProgress(float pullFraction, int state) {
+                        super.onHeaderProgress(pullFraction, state);
+                        if (states.isEmpty() || states.get(states.size() - 1) != state) {
+                            states.add(state);
+                        }
+                    }
+                };
+            }
+        });
+        mLayout.setOnRefreshListener(new InheritedSwipeRefreshLayout.OnRefreshListener() {
+            @Override
+            public void onRefresh() {
+            }
+        });
+        return states;
+    }
+
+    private void dispatch(MotionEvent[] events) {
+        for (MotionEvent event : events) {
+            mLayout.dispatchTouchEvent(event);
+        }
+        TestLayouts.recycle(events);
+    }
+}
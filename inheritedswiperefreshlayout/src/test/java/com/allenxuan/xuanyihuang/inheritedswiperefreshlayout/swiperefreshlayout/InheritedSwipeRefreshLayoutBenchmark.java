@@ -0,0 +1,119 @@
+package com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout;
+
+import android.support.v4.view.ViewCompat;
+import android.view.MotionEvent;
+import android.view.View;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+/**
+ * Benchmarks of the hot paths of InheritedSwipeRefreshLayout on the local JVM. Each benchmark
+ * reports its average time and allocated bytes per operation through {@link BenchmarkRunner}.
+ * Skipped unless run with {@code ./gradlew test -Disrl.benchmark=true}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 26)
+public class InheritedSwipeRefreshLayoutBenchmark {
+    private static final int LIST_ITEM_COUNT = 5000;
+    private static final int WARMUP_ITERATIONS = 2000;
+    private static final int ITERATIONS = 10000;
+    // Short of the 80px trigger distance so that a gesture never starts a refresh
+    private static final int PULL_MOVE_COUNT = 20;
+    private static final float PULL_STEP = 6f;
+
+    private InheritedSwipeRefreshLayout mLayout;
+    private View mList;
+    private MotionEvent[] mPull;
+    private final int[] mConsumed = new int[2];
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(BenchmarkRunner.isEnabled());
+        mLayout = TestLayouts.createWithList(RuntimeEnvironment.application, LIST_ITEM_COUNT);
+        mList = mLayout.getChildAt(0);
+        mPull = TestLayouts.obtainPull(100f, PULL_STEP, PULL_MOVE_COUNT);
+    }
+
+    @After
+    public void tearDown() {
+        if (mPull != null) {
+            TestLayouts.recycle(mPull);
+        }
+    }
+
+    @Test
+    public void touchEventStream() {
+        BenchmarkRunner.measure("touch event (intercept + touch)", WARMUP_ITERATIONS, ITERATIONS,
+                new BenchmarkRunner.Operation() {
+                    private boolean mIntercepted;
+
+                    @Override
+                    public void run(int iteration) {
+                        final MotionEvent event = mPull[iteration % mPull.length];
+                        // Route the event like ViewGroup.dispatchTouchEvent does
+                        if (event.getActionMasked() == MotionEvent.ACTION_DOWN) {
+                            mIntercepted = false;
+                        }
+                        if (!mIntercepted) {
+                            mIntercepted = mLayout.onInterceptTouchEvent(event);
+                        }
+                        if (mIntercepted) {
+                            mLayout.onTouchEvent(event);
+                        }
+                    }
+                });
+    }
+
+    @Test
+    public void moveHeader() {
+        BenchmarkRunner.measure("moveHeader", WARMUP_ITERATIONS, ITERATIONS,
+                new BenchmarkRunner.Operation() {
+                    @Override
+                    public void run(int iteration) {
+                        mLayout.moveHeader(iteration % 200);
+                    }
+                });
+    }
+
+    @Test
+    public void measureAndLayout() {
+        BenchmarkRunner.measure("onMeasure + onLayout, large list", WARMUP_ITERATIONS, ITERATIONS,
+                new BenchmarkRunner.Operation() {
+                    @Override
+                    public void run(int iteration) {
+                        mLayout.forceLayout();
+                        TestLayouts.measureAndLayout(mLayout);
+                    }
+                });
+    }
+
+    @Test
+    public void nestedScrollChain() {
+        BenchmarkRunner.measure("nested scroll (pull then push back)", WARMUP_ITERATIONS, ITERATIONS,
+                new BenchmarkRunner.Operation() {
+                    @Override
+                    public void run(int iteration) {
+                        final int step = iteration % 40;
+                        if (step == 0) {
+                            mLayout.onStartNestedScroll(mList, mList, ViewCompat.SCROLL_AXIS_VERTICAL);
+                            mLayout.onNestedScrollAccepted(mList, mList, ViewCompat.SCROLL_AXIS_VERTICAL);
+                        } else if (step < 20) {
+                            mLayout.onNestedScroll(mList, 0, 0, 0, -3);
+                        } else if (step < 39) {
+                            mConsumed[0] = 0;
+                            mConsumed[1] = 0;
+                            mLayout.onNestedPreScroll(mList, 0, 3, mConsumed);
+                        } else {
+                            mLayout.onStopNestedScroll(mList);
+                        }
+                    }
+                });
+    }
+}
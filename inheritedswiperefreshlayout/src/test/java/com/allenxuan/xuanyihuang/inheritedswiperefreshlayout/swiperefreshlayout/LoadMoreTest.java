@@ -0,0 +1,109 @@
+package com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout;
+
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 26)
+public class LoadMoreTest {
+    // 120px items on a 1920px high layout
+    private static final int ITEM_HEIGHT = 120;
+    private static final int ITEM_COUNT = 100;
+    private static final int PREFETCH_DISTANCE = 600;
+
+    private int mLoadMoreCount;
+
+    private final InheritedSwipeRefreshLayout.OnLoadMoreListener mListener =
+            new InheritedSwipeRefreshLayout.OnLoadMoreListener() {
+        @Override
+        public void onLoadMore() {
+            mLoadMoreCount++;
+        }
+    };
+
+    @Test
+    public void firesOnceWithinThePrefetchDistance() {
+        final InheritedSwipeRefreshLayout layout = createLayout(ITEM_COUNT);
+        final RecyclerView list = (RecyclerView) layout.getChildAt(0);
+        final int maxScroll = ITEM_COUNT * ITEM_HEIGHT - TestLayouts.HEIGHT;
+
+        scrollTo(layout, list, maxScroll - PREFETCH_DISTANCE - ITEM_HEIGHT);
+        assertEquals(0, mLoadMoreCount);
+        assertFalse(layout.isLoadingMore());
+
+        scrollTo(layout, list, maxScroll - PREFETCH_DISTANCE + ITEM_HEIGHT);
+        assertEquals(1, mLoadMoreCount);
+        assertTrue(layout.isLoadingMore());
+    }
+
+    @Test
+    public void doesNotFireAgainWhileLoading() {
+        final InheritedSwipeRefreshLayout layout = createLayout(ITEM_COUNT);
+        final RecyclerView list = (RecyclerView) layout.getChildAt(0);
+        final int maxScroll = ITEM_COUNT * ITEM_HEIGHT - TestLayouts.HEIGHT;
+
+        scrollTo(layout, list, maxScroll - PREFETCH_DISTANCE / 2);
+        scrollTo(layout, list, maxScroll - PREFETCH_DISTANCE / 4);
+        scrollTo(layout, list, maxScroll);
+        assertEquals(1, mLoadMoreCount);
+
+        layout.setLoadingMore(false);
+        scrollTo(layout, list, maxScroll - PREFETCH_DISTANCE / 2);
+        assertEquals(2, mLoadMoreCount);
+    }
+
+    @Test
+    public void footerTakesRoomFromTheTarget() {
+        final InheritedSwipeRefreshLayout layout = createLayout(ITEM_COUNT);
+        final View list = layout.getChildAt(0);
+        layout.setLoadingMore(true);
+        TestLayouts.measureAndLayout(layout);
+
+        final View footer = layout.getChildAt(layout.getChildCount() - 1);
+        assertTrue(footer.getMeasuredHeight() > 0);
+        assertEquals(footer.getTop(), list.getBottom());
+        assertEquals(TestLayouts.HEIGHT, footer.getBottom());
+
+        // Replacing the factory while loading keeps a footer on screen
+        layout.setFooterViewFactory(null);
+        final View newFooter = layout.getChildAt(layout.getChildCount() - 1);
+        assertNotNull(newFooter);
+        assertTrue(newFooter != footer);
+        assertEquals(View.VISIBLE, newFooter.getVisibility());
+    }
+
+    @Test
+    public void shortTargetIgnoresOtherScrolls() {
+        final InheritedSwipeRefreshLayout layout = createLayout(3);
+        // Scrolls elsewhere in the window never move a target that cannot scroll
+        for (int i = 0; i < 10; i++) {
+            layout.onWindowScrollChanged();
+        }
+        assertEquals(0, mLoadMoreCount);
+    }
+
+    private InheritedSwipeRefreshLayout createLayout(int itemCount) {
+        final InheritedSwipeRefreshLayout layout = TestLayouts.createWithList(
+                RuntimeEnvironment.application, itemCount);
+        layout.setLoadMorePrefetchDistance(PREFETCH_DISTANCE);
+        layout.setOnLoadMoreListener(mListener);
+        return layout;
+    }
+
+    private static void scrollTo(InheritedSwipeRefreshLayout layout, RecyclerView list, int y) {
+        list.scrollBy(0, y - list.computeVerticalScrollOffset());
+        assertEquals(y, list.computeVerticalScrollOffset());
+        layout.onWindowScrollChanged();
+    }
+}
@@ -0,0 +1,60 @@
+package com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 26)
+public class RefreshFreshnessTest {
+    private static final long TTL_MILLIS = 60000;
+
+    private InheritedSwipeRefreshLayout mLayout;
+    private int mRefreshCount;
+
+    @Before
+    public void setUp() {
+        mLayout = TestLayouts.createWithList(RuntimeEnvironment.application, 10);
+        mLayout.setRefreshFreshnessTtl(TTL_MILLIS);
+        mLayout.setOnRefreshListener(new InheritedSwipeRefreshLayout.OnRefreshListener() {
+            @Override
+            public void onRefresh() {
+                mRefreshCount++;
+            }
+        });
+    }
+
+    @Test
+    public void finishedRefreshKeepsTheContentFresh() {
+        refresh();
+        mLayout.getRefreshRequest().finish();
+        TestLayouts.finishHeaderAnimations(mLayout);
+
+        refresh();
+        assertEquals(1, mRefreshCount);
+        assertEquals(1, mLayout.getSkippedRefreshCount());
+    }
+
+    @Test
+    public void refreshEndedWithoutFinishingDoesNotCount() {
+        refresh();
+        // E.g. the load failed and the app just hides the header
+        mLayout.setRefreshing(false);
+        TestLayouts.finishHeaderAnimations(mLayout);
+
+        refresh();
+        assertEquals(2, mRefreshCount);
+        assertEquals(0, mLayout.getSkippedRefreshCount());
+    }
+
+    private void refresh() {
+        assertTrue(mLayout.requestRefresh());
+        TestLayouts.finishHeaderAnimations(mLayout);
+    }
+}
@@ -0,0 +1,165 @@
+package com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout;
+
+import android.content.Context;
+import android.view.View;
+
+import com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout.header.HeaderViewBase;
+import com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout.header.HeaderViewFactory;
+import com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout.header.IHeaderView;
+import com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout.header.SimpleHeaderViewImpl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Triggers refreshes the way an app does, on attached layouts, and checks which of them the
+ * scheduler starts, in which order, and what their headers show meanwhile.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 26)
+public class RefreshSchedulerTest {
+    private final InheritedSwipeRefreshLayout[] mLayouts = new InheritedSwipeRefreshLayout[3];
+    private final int[] mHeaderStates = new int[3];
+    // Indices of the layouts in the order their listeners were notified
+    private final List<Integer> mStartOrder = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        for (int i = 0; i < mLayouts.length; i++) {
+            final int index = i;
+            mLayouts[i] = TestLayouts.createWithList(RuntimeEnvironment.application, 10);
+            mLayouts[i].setHeaderViewFactory(new HeaderViewFactory() {
+                @Override
+                public HeaderViewBase createHeaderView(Context context) {
+                    return new SimpleHeaderViewImpl(context) {
+                        @Override
+                        public void onHeaderProgress(float pullFraction, int state) {
+                            super.onHeaderProgress(pullFraction, state);
+                            mHeaderStates[index] = state;
+                        }
+                    };
+                }
+            });
+            mLayouts[i].setOnRefreshListener(new InheritedSwipeRefreshLayout.OnRefreshListener() {
+                @Override
+                public void onRefresh() {
+                    mStartOrder.add(index);
+                }
+            });
+            TestLayouts.attach(mLayouts[i]);
+        }
+        // Keep the slots handed over by completions queued until a test runs them
+        ShadowLooper.pauseMainLooper();
+    }
+
+    @After
+    public void tearDown() {
+        ShadowLooper.unPauseMainLooper();
+    }
+
+    @Test
+    public void queuesRefreshesBeyondTheCap() {
+        final RefreshScheduler scheduler = new RefreshScheduler(1);
+        requestRefreshes(scheduler);
+        assertStartOrder(0);
+        assertHeaderStates(IHeaderView.STATE_REFRESHING, IHeaderView.STATE_PENDING,
+                IHeaderView.STATE_PENDING);
+        assertEquals(1, scheduler.getRunningCount());
+        assertEquals(2, scheduler.getPendingCount());
+
+        // Completing a refresh starts the oldest queued one once the completion returns
+        mLayouts[0].getRefreshRequest().finish();
+        assertStartOrder(0);
+        ShadowLooper.runUiThreadTasks();
+        assertStartOrder(0, 1);
+        assertNotNull(mLayouts[1].getRefreshRequest());
+        assertEquals(IHeaderView.STATE_REFRESHING, mHeaderStates[1]);
+        assertEquals(IHeaderView.STATE_PENDING, mHeaderStates[2]);
+
+        mLayouts[1].setRefreshing(false);
+        ShadowLooper.runUiThreadTasks();
+        assertStartOrder(0, 1, 2);
+        assertEquals(IHeaderView.STATE_REFRESHING, mHeaderStates[2]);
+        assertEquals(0, scheduler.getPendingCount());
+    }
+
+    @Test
+    public void startsVisibleLayoutsFirst() {
+        final RefreshScheduler scheduler = new RefreshScheduler(1);
+        mLayouts[1].setVisibility(View.INVISIBLE);
+        requestRefreshes(scheduler);
+
+        mLayouts[0].getRefreshRequest().finish();
+        ShadowLooper.runUiThreadTasks();
+        // Queued after the hidden layout, yet on screen
+        assertStartOrder(0, 2);
+        assertEquals(IHeaderView.STATE_PENDING, mHeaderStates[1]);
+
+        mLayouts[2].getRefreshRequest().finish();
+        ShadowLooper.runUiThreadTasks();
+        assertStartOrder(0, 2, 1);
+    }
+
+    @Test
+    public void cancelledLayoutsLeaveTheQueue() {
+        final RefreshScheduler scheduler = new RefreshScheduler(1);
+        requestRefreshes(scheduler);
+        mLayouts[1].setEnabled(false);
+        assertEquals(1, scheduler.getPendingCount());
+
+        mLayouts[0].setEnabled(false);
+        assertNull(mLayouts[0].getRefreshRequest());
+        ShadowLooper.runUiThreadTasks();
+        assertStartOrder(0, 2);
+        assertEquals(1, scheduler.getRunningCount());
+    }
+
+    @Test
+    public void raisingTheCapStartsQueuedRefreshes() {
+        final RefreshScheduler scheduler = new RefreshScheduler(1);
+        requestRefreshes(scheduler);
+        scheduler.setMaxConcurrentRefreshes(3);
+        assertStartOrder(0, 1, 2);
+        assertHeaderStates(IHeaderView.STATE_REFRESHING, IHeaderView.STATE_REFRESHING,
+                IHeaderView.STATE_REFRESHING);
+        assertEquals(3, scheduler.getRunningCount());
+    }
+
+    /**
+     * Request a refresh of every layout in turn, each header settling at the refreshing position
+     * before the next request.
+     */
+    private void requestRefreshes(RefreshScheduler scheduler) {
+        for (InheritedSwipeRefreshLayout layout : mLayouts) {
+            layout.setRefreshScheduler(scheduler);
+            assertTrue(layout.requestRefresh());
+            TestLayouts.finishHeaderAnimations(layout);
+            assertTrue(layout.isRefreshing());
+        }
+    }
+
+    private void assertStartOrder(Integer... expected) {
+        assertEquals("layouts notified", Arrays.asList(expected), mStartOrder);
+    }
+
+    private void assertHeaderStates(int... expected) {
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("header state of layout " + i, expected[i], mHeaderStates[i]);
+        }
+    }
+}
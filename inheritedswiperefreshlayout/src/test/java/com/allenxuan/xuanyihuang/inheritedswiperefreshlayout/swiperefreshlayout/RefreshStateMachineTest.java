@@ -0,0 +1,60 @@
+package com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 26)
+public class RefreshStateMachineTest {
+
+    @Test
+    public void recordsOnlyActualTransitions() {
+        final RefreshStateMachine machine = new RefreshStateMachine();
+        machine.moveTo(RefreshStateMachine.STATE_DRAGGING);
+        machine.moveTo(RefreshStateMachine.STATE_DRAGGING);
+        machine.moveFrom(RefreshStateMachine.STATE_NESTED_SCROLLING,
+                RefreshStateMachine.STATE_IDLE);
+        machine.moveTo(RefreshStateMachine.STATE_TRIGGERED);
+
+        assertTrue(machine.isRefreshing());
+        assertFalse(machine.isBeingDragged());
+        final String dump = dump(machine);
+        assertTrue(dump.contains("state=TRIGGERED transitions=2"));
+        assertTrue(dump.contains("IDLE -> DRAGGING"));
+        assertTrue(dump.contains("DRAGGING -> TRIGGERED"));
+    }
+
+    @Test
+    public void keepsTheMostRecentTransitionsOnly() {
+        final RefreshStateMachine machine = new RefreshStateMachine();
+        final int cycles = RefreshStateMachine.HISTORY_SIZE;
+        for (int i = 0; i < cycles; i++) {
+            machine.moveTo(RefreshStateMachine.STATE_DRAGGING);
+            machine.moveTo(RefreshStateMachine.STATE_RETURNING_TO_START);
+            machine.moveTo(RefreshStateMachine.STATE_IDLE);
+        }
+        machine.moveTo(RefreshStateMachine.STATE_REFRESHING);
+
+        final String[] lines = dump(machine).split("\n");
+        assertEquals(1 + RefreshStateMachine.HISTORY_SIZE, lines.length);
+        assertTrue(lines[0].contains("transitions=" + (3 * cycles + 1)));
+        assertTrue(lines[lines.length - 1].endsWith("IDLE -> REFRESHING"));
+    }
+
+    private static String dump(RefreshStateMachine machine) {
+        final StringWriter out = new StringWriter();
+        final PrintWriter writer = new PrintWriter(out);
+        machine.dump("", writer);
+        writer.flush();
+        return out.toString();
+    }
+}
@@ -0,0 +1,142 @@
+package com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout;
+
+import android.app.Activity;
+import android.content.Context;
+import android.os.SystemClock;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.animation.Animation;
+import android.view.animation.Transformation;
+import android.widget.TextView;
+
+import com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout.header.HeaderViewBase;
+
+import org.robolectric.Robolectric;
+
+/**
+ * Builders shared by the local tests of InheritedSwipeRefreshLayout.
+ */
+
+final class TestLayouts {
+    static final int WIDTH = 1080;
+    static final int HEIGHT = 1920;
+    static final long FRAME_MILLIS = 16;
+    private static final int MAX_CHAINED_ANIMATIONS = 10;
+
+    private TestLayouts() {
+    }
+
+    /**
+     * @return A measured and laid out layout hosting a RecyclerView with the given item count.
+     */
+    static InheritedSwipeRefreshLayout createWithList(Context context, int itemCount) {
+        final RecyclerView list = new RecyclerView(context);
+        list.setLayoutManager(new LinearLayoutManager(context));
+        list.setAdapter(new TextAdapter(itemCount));
+        final InheritedSwipeRefreshLayout layout = new InheritedSwipeRefreshLayout(context);
+        layout.addView(list, new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.MATCH_PARENT));
+        measureAndLayout(layout);
+        return layout;
+    }
+
+    /**
+     * Attach the layout to the window of a new Activity, so that it receives attach callbacks
+     * and its posted runnables run on the main looper.
+     */
+    static InheritedSwipeRefreshLayout attach(InheritedSwipeRefreshLayout layout) {
+        final Activity activity = Robolectric.setupActivity(Activity.class);
+        activity.setContentView(layout);
+        measureAndLayout(layout);
+        return layout;
+    }
+
+    /**
+     * Run the header transitions to their end, frame by frame, the way View.draw() and
+     * ViewGroup.finishAnimatingView() do. Follows the transitions chained by the listeners.
+     *
+     * @return How many frames were run.
+     */
+    static int finishHeaderAnimations(InheritedSwipeRefreshLayout layout) {
+        final Transformation transformation = new Transformation();
+        int frames = 0;
+        Animation animation;
+        for (int leg = 0; leg < MAX_CHAINED_ANIMATIONS && layout.mHeaderView != null
+                && (animation = layout.mHeaderView.getAnimation()) != null; leg++) {
+            final HeaderViewBase header = layout.mHeaderView;
+            header.onAnimationStart();
+            long time = 0;
+            while (animation.getTransformation(time, transformation)) {
+                time += FRAME_MILLIS;
+                frames++;
+            }
+            frames++;
+            header.clearAnimation();
+            header.onAnimationEnd();
+        }
+        return frames;
+    }
+
+    static void measureAndLayout(View view) {
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    /**
+     * @return A down event, moveCount move events going down by step pixels each and an up event.
+     */
+    static MotionEvent[] obtainPull(float startY, float step, int moveCount) {
+        final MotionEvent[] events = new MotionEvent[moveCount + 2];
+        final long downTime = SystemClock.uptimeMillis();
+        events[0] = MotionEvent.obtain(downTime, downTime, MotionEvent.ACTION_DOWN,
+                WIDTH / 2, startY, 0);
+        for (int i = 1; i <= moveCount; i++) {
+            events[i] = MotionEvent.obtain(downTime, downTime + i * 8, MotionEvent.ACTION_MOVE,
+                    WIDTH / 2, startY + i * step, 0);
+        }
+        events[moveCount + 1] = MotionEvent.obtain(downTime, downTime + (moveCount + 1) * 8,
+                MotionEvent.ACTION_UP, WIDTH / 2, startY + moveCount * step, 0);
+        return events;
+    }
+
+    static void recycle(MotionEvent[] events) {
+        for (MotionEvent event : events) {
+            event.recycle();
+        }
+    }
+
+    private static class TextAdapter extends RecyclerView.Adapter<TextHolder> {
+        private final int mItemCount;
+
+        TextAdapter(int itemCount) {
+            mItemCount = itemCount;
+        }
+
+        @Override
+        public TextHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            final TextView textView = new TextView(parent.getContext());
+            textView.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, 120));
+            return new TextHolder(textView);
+        }
+
+        @Override
+        public void onBindViewHolder(TextHolder holder, int position) {
+            ((TextView) holder.itemView).setText(String.valueOf(position));
+        }
+
+        @Override
+        public int getItemCount() {
+            return mItemCount;
+        }
+    }
+
+    private static class TextHolder extends RecyclerView.ViewHolder {
+        TextHolder(View itemView) {
+            super(itemView);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout.header;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.view.View;
+
+import com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.R;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowCanvas;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 26)
+public class CanvasHeaderViewImplTest {
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 80;
+
+    private CanvasHeaderViewImpl mHeader;
+
+    @Before
+    public void setUp() {
+        mHeader = new CanvasHeaderViewImpl(RuntimeEnvironment.application);
+        mHeader.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        mHeader.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    @Test
+    public void hasNoChildViews() {
+        assertEquals(0, mHeader.getChildCount());
+    }
+
+    @Test
+    public void drawsTheLabelOfEachState() {
+        assertEquals(string(R.string.isrl_header_default), drawnLabel());
+
+        mHeader.onHeaderProgress(0.5f, IHeaderView.STATE_PULLING);
+        mHeader.onHeaderProgress(1f, IHeaderView.STATE_REFRESHING);
+        assertEquals(string(R.string.isrl_header_default), drawnLabel());
+
+        mHeader.onHeaderProgress(1f, IHeaderView.STATE_PENDING);
+        assertEquals(string(R.string.isrl_header_pending), drawnLabel());
+
+        // Up to date wins over every progress state
+        mHeader.onUpToDateChanged(true);
+        assertEquals(string(R.string.isrl_header_up_to_date), drawnLabel());
+        mHeader.onHeaderProgress(1f, IHeaderView.STATE_REFRESHING);
+        assertEquals(string(R.string.isrl_header_up_to_date), drawnLabel());
+
+        mHeader.onUpToDateChanged(false);
+        mHeader.onHeaderProgress(0f, IHeaderView.STATE_IDLE);
+        assertEquals(string(R.string.isrl_header_default), drawnLabel());
+    }
+
+    @Test
+    public void centersTheLabel() {
+        final ShadowCanvas canvas = draw();
+        final ShadowCanvas.TextHistoryEvent text = canvas.getDrawnTextEvent(0);
+        final float width = text.paint.measureText(text.text);
+        assertEquals((WIDTH - width) / 2f, text.x, 0.5f);
+    }
+
+    private String drawnLabel() {
+        final ShadowCanvas canvas = draw();
+        assertEquals(1, canvas.getTextHistoryCount());
+        return canvas.getDrawnTextEvent(0).text;
+    }
+
+    private ShadowCanvas draw() {
+        final Canvas canvas = new Canvas(Bitmap.createBitmap(WIDTH, HEIGHT,
+                Bitmap.Config.ARGB_8888));
+        mHeader.draw(canvas);
+        return Shadow.extract(canvas);
+    }
+
+    private static String string(int id) {
+        return RuntimeEnvironment.application.getString(id);
+    }
+}
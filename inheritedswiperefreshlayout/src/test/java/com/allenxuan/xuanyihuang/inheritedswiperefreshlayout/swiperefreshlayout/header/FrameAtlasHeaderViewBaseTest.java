@@ -0,0 +1,137 @@
+package com.allenxuan.xuanyihuang.inheritedswiperefreshlayout.swiperefreshlayout.header;
+
+import android.app.Activity;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.support.annotation.NonNull;
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 26)
+public class FrameAtlasHeaderViewBaseTest {
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 50;
+    private static final int FRAME_BYTES = WIDTH * HEIGHT * 4;
+    // The default frame count
+    private static final int FRAME_COUNT = 30;
+    private static final int PULL_STEPS = 100;
+
+    private RecordingHeader mHeader;
+    private Canvas mCanvas;
+
+    @Before
+    public void setUp() {
+        final Activity activity = Robolectric.setupActivity(Activity.class);
+        // Keep the prerender messages queued until a test runs them
+        ShadowLooper.pauseMainLooper();
+        mHeader = new RecordingHeader(activity);
+        activity.setContentView(mHeader, new ViewGroup.LayoutParams(WIDTH, HEIGHT));
+        mHeader.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        mHeader.layout(0, 0, WIDTH, HEIGHT);
+        mCanvas = new Canvas(Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888));
+    }
+
+    @After
+    public void tearDown() {
+        ShadowLooper.unPauseMainLooper();
+    }
+
+    @Test
+    public void defaultBudgetHoldsEveryFrame() {
+        assertEquals(0, mHeader.mRenderedProgresses.size());
+        ShadowLooper.runUiThreadTasks();
+        assertEquals(FRAME_COUNT, mHeader.mRenderedProgresses.size());
+        assertEquals(1f, mHeader.mRenderedProgresses.get(FRAME_COUNT - 1), 0f);
+
+        pullAndDraw();
+        assertEquals(FRAME_COUNT, mHeader.mRenderedProgresses.size());
+    }
+
+    @Test
+    public void tightBudgetSplitsTheAnimationIntoFewerFrames() {
+        mHeader.setFrameCacheBudget(FRAME_BYTES * 5 + FRAME_BYTES / 2);
+        ShadowLooper.runUiThreadTasks();
+        assertEquals(Arrays.asList(0f, 0.25f, 0.5f, 0.75f, 1f), mHeader.mRenderedProgresses);
+
+        // Every pull position maps onto one of the five cached frames
+        pullAndDraw();
+        assertEquals(5, mHeader.mRenderedProgresses.size());
+    }
+
+    @Test
+    public void drawsLiveOnlyWhileNothingIsCached() {
+        mHeader.draw(mCanvas);
+        assertEquals(1, mHeader.mRenderedProgresses.size());
+
+        ShadowLooper.runUiThreadTasks();
+        mHeader.mRenderedProgresses.clear();
+        mHeader.draw(mCanvas);
+        assertEquals(0, mHeader.mRenderedProgresses.size());
+    }
+
+    @Test
+    public void runningLowSplitsTheAnimationIntoFewerFrames() {
+        ShadowLooper.runUiThreadTasks();
+        // Half the budget holds half of the frames, which the animation is split into
+        mHeader.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        mHeader.mRenderedProgresses.clear();
+        ShadowLooper.runUiThreadTasks();
+        assertEquals(FRAME_COUNT / 2, mHeader.mRenderedProgresses.size());
+        assertEquals(1f, mHeader.mRenderedProgresses.get(FRAME_COUNT / 2 - 1), 0f);
+
+        mHeader.mRenderedProgresses.clear();
+        pullAndDraw();
+        assertEquals(0, mHeader.mRenderedProgresses.size());
+    }
+
+    @Test
+    public void budgetBelowTwoFramesDrawsLive() {
+        mHeader.setFrameCacheBudget(FRAME_BYTES);
+        ShadowLooper.runUiThreadTasks();
+        assertEquals(0, mHeader.mRenderedProgresses.size());
+
+        mHeader.onHeaderProgress(0.5f, IHeaderView.STATE_PULLING);
+        mHeader.draw(mCanvas);
+        assertEquals(1, mHeader.mRenderedProgresses.size());
+    }
+
+    private void pullAndDraw() {
+        for (int i = 0; i <= PULL_STEPS; i++) {
+            mHeader.onHeaderProgress((float) i / PULL_STEPS, IHeaderView.STATE_PULLING);
+            mHeader.draw(mCanvas);
+        }
+    }
+
+    private static class RecordingHeader extends FrameAtlasHeaderViewBase {
+        final List<Float> mRenderedProgresses = new ArrayList<>();
+
+        RecordingHeader(Context context) {
+            super(context);
+        }
+
+        @Override
+        protected void renderFrame(@NonNull Canvas canvas, int width, int height,
+                float progress) {
+            mRenderedProgresses.add(progress);
+        }
+    }
+}